@@ -0,0 +1,81 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+// the graph side of the JMH benchmarks, see bench.Workload for why this lives in the default package
+
+public class GraphWorkload implements bench.Workload {
+    private static final int PAIRS = 1024;
+
+    private DotGraph graph;
+    private File dotFile;
+    private File exportFile;
+    private File snapshotFile;
+    private String[] labels;
+    private String[] srcs;
+    private String[] dsts;
+
+    @Override
+    public void setUp(int edges, long seed) throws IOException {
+        int nodes = Math.max(2, edges / 4);
+        Random rnd = new Random(seed);
+        dotFile = File.createTempFile("jmh", ".dot");
+        exportFile = File.createTempFile("jmh-export", ".dot");
+        snapshotFile = File.createTempFile("jmh", ".snap");
+        GraphGenerator.erdosRenyi(nodes, edges, seed).withWeights(100).writeDOT(dotFile.getAbsolutePath());
+        graph = DotGraph.parseGraph(dotFile.getAbsolutePath());
+
+        labels = graph.getNodes().toArray(new String[0]);
+        srcs = new String[PAIRS];
+        dsts = new String[PAIRS];
+        for (int i = 0; i < PAIRS; i++) {
+            srcs[i] = labels[rnd.nextInt(labels.length)];
+            dsts[i] = labels[rnd.nextInt(labels.length)];
+        }
+        graph.saveSnapshot(snapshotFile.getAbsolutePath());
+        graph.freeze();
+    }
+
+    @Override
+    public void tearDown() {
+        dotFile.delete();
+        exportFile.delete();
+        snapshotFile.delete();
+    }
+
+    @Override
+    public Object parse() throws IOException {
+        return DotGraph.parseGraph(dotFile.getAbsolutePath());
+    }
+
+    @Override
+    public Object parseParallel() throws IOException {
+        return DotGraph.parseGraphParallel(dotFile.getAbsolutePath());
+    }
+
+    @Override
+    public Object loadSnapshot() throws IOException {
+        DotGraph loaded = DotGraph.loadSnapshot(snapshotFile.getAbsolutePath());
+        return loaded.GraphSearch(srcs[0], dsts[0], DotGraph.Algorithm.BIDIRECTIONAL_BFS);
+    }
+
+    @Override
+    public Object neighbors(int i) {
+        return graph.getNeighbors(srcs[i % PAIRS]);
+    }
+
+    @Override
+    public Object search(String algorithm, int i) {
+        return graph.GraphSearch(srcs[i % PAIRS], dsts[i % PAIRS], DotGraph.Algorithm.valueOf(algorithm));
+    }
+
+    @Override
+    public void exportDOT() throws IOException {
+        graph.outputDOTGraph(exportFile.getAbsolutePath());
+    }
+
+    @Override
+    public String asString() {
+        return graph.toString();
+    }
+}
@@ -0,0 +1,25 @@
+package bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// entry point of target/benchmarks.jar: the usual JMH command line, with the GC profiler always on
+// so every result comes with allocation rates (gc.alloc.rate.norm = bytes allocated per op)
+//   mvn -P jmh package -DskipTests
+//   java -jar target/benchmarks.jar                           everything (takes hours at 10M edges)
+//   java -jar target/benchmarks.jar QueryBench -p edges=100000 -p algorithm=BFS,DIJKSTRA
+//   java -jar target/benchmarks.jar -rf json -rff before.json  save results to compare against later
+
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        new Runner(new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+}
@@ -0,0 +1,70 @@
+package bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// whole-graph operations: parsing a DOT file (sequential and parallel), a cold start from a saved
+// snapshot instead, writing DOT, and toString
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+public class LoadBench {
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int edges;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workload = Workload.create();
+        workload.setUp(edges, 42);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        workload.tearDown();
+    }
+
+    @Benchmark
+    public Object parseGraph() throws IOException {
+        return workload.parse();
+    }
+
+    @Benchmark
+    public Object parseGraphParallel() throws IOException {
+        return workload.parseParallel();
+    }
+
+    @Benchmark
+    public Object loadSnapshot() throws IOException {
+        return workload.loadSnapshot();
+    }
+
+    @Benchmark
+    public void outputDOTGraph() throws IOException {
+        workload.exportDOT();
+    }
+
+    @Benchmark
+    public String toStringAll() {
+        return workload.asString();
+    }
+}
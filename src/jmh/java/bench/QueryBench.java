@@ -0,0 +1,66 @@
+package bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// per-query operations on an already loaded graph: getNeighbors and GraphSearch for every algorithm
+// each call takes the next of 1024 fixed random nodes / (src, dst) pairs, so one lucky pair
+// can't dominate the numbers
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+public class QueryBench {
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int edges;
+
+    private Workload workload;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workload = Workload.create();
+        workload.setUp(edges, 42);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        workload.tearDown();
+    }
+
+    @Benchmark
+    public Object getNeighbors() {
+        return workload.neighbors(next++);
+    }
+
+    @Benchmark
+    public Object graphSearch(Algorithm algo) {
+        return workload.search(algo.algorithm, next++);
+    }
+
+    // own state so only graphSearch gets run once per algorithm
+    @State(Scope.Benchmark)
+    public static class Algorithm {
+        // every DotGraph.Algorithm (kept in sync by hand, JMH can't see the enum from here)
+        @Param({"BFS", "DFS", "RANDOM_FULL", "RANDOM_UNVISITED", "RANDOM_BACKTRACK", "BIDIRECTIONAL_BFS",
+                "DIJKSTRA", "ASTAR", "PARALLEL_BFS"})
+        public String algorithm;
+    }
+}
@@ -0,0 +1,69 @@
+package bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// throughput of GraphSearch on one shared graph (and so one shared strategy per algorithm) from
+// a single thread vs. one thread per core. with per-thread search state the second should be
+// close to cores times the first:
+//   java -jar target/benchmarks.jar ScalingBench -p edges=100000
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+public class ScalingBench {
+    @Param({"10000", "100000", "1000000"})
+    public int edges;
+
+    @Param({"BFS", "DIJKSTRA"})
+    public String algorithm;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workload = Workload.create();
+        workload.setUp(edges, 42);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        workload.tearDown();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object oneThread(Cursor cursor) {
+        return workload.search(algorithm, cursor.next++);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Object allCores(Cursor cursor) {
+        return workload.search(algorithm, cursor.next++);
+    }
+
+    // every thread walks the query pairs on its own
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+}
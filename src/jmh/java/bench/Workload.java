@@ -0,0 +1,43 @@
+package bench;
+
+import java.io.IOException;
+
+// what the benchmarks run against
+// JMH won't take benchmarks in the default package, and a named package can't import the graph
+// classes (they're all in the default package), so the benchmarks go through this interface and
+// GraphWorkload implements it next to the graph code. it's a single implementation, so the JIT
+// inlines straight through the interface calls.
+
+public interface Workload {
+    static Workload create() {
+        try {
+            return (Workload) Class.forName("GraphWorkload").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("GraphWorkload isn't on the classpath", e);
+        }
+    }
+
+    // writes a seeded Erdos-Renyi graph with about this many edges (and edges / 4 nodes) as DOT and loads it,
+    // then saves it with saveSnapshot too
+    void setUp(int edges, long seed) throws IOException;
+
+    void tearDown();
+
+    // parseGraph on the DOT file written by setUp
+    Object parse() throws IOException;
+
+    Object parseParallel() throws IOException;
+
+    // loadSnapshot on the snapshot written by setUp, plus one search so the mapped file actually gets read
+    Object loadSnapshot() throws IOException;
+
+    // getNeighbors / GraphSearch for the i-th of a fixed set of random nodes / node pairs
+    Object neighbors(int i);
+
+    Object search(String algorithm, int i);
+
+    // outputDOTGraph into a temp file
+    void exportDOT() throws IOException;
+
+    String asString();
+}
@@ -1,32 +1,29 @@
 // BFS implementation using the template pattern
-import java.util.Deque;
-import java.util.LinkedList;
-import java.util.List;          // ← add this
 
 public class BFSGraphSearch extends GraphSearchTemplate {
     @Override
-    protected Deque<PathNode> initFrontier() {
-        return new LinkedList<>();
+    protected void frontierAdd(SearchState state, int node) {
+        state.addLast(node);
     }
 
     @Override
-    protected void frontierAdd(PathNode node) {
-        frontier.addLast(node);
+    protected int frontierRemove(SearchState state) {
+        return state.pollFirst();
     }
 
     @Override
-    protected PathNode frontierRemove() {
-        return frontier.removeFirst();
+    protected void planNext(GraphSnapshot graph, int current, VisitedView visited, IntList out) {
+        super.planNext(graph, current, visited, out);
     }
 
+    // parents are fixed the moment a node is discovered, so one traversal serves every dst
     @Override
-    protected List<String> planNext(String current, List<String> visitedNames) {
-        return super.planNext(current, visitedNames);
+    protected boolean sharesTraversal() {
+        return true;
     }
 
     @Override
-    protected void onVisit(String pathSoFar) {
-        // printing for demo
-        System.out.println("visiting " + pathSoFar);
+    protected boolean isDeterministic() {
+        return true;
     }
 }
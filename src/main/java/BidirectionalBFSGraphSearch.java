@@ -0,0 +1,114 @@
+// bidirectional BFS: one BFS forward from src, one backward from dst over the reverse index,
+// stopping once the two meet. each round expands one whole level of whichever frontier is
+// smaller, so on high fan-out graphs it touches roughly 2 * b^(d/2) nodes instead of b^d.
+// returns a shortest path, same length as BFSGraphSearch (though ties can break differently).
+
+public class BidirectionalBFSGraphSearch extends GraphSearchTemplate {
+
+    @Override
+    protected boolean isDeterministic() {
+        return true;
+    }
+
+    @Override
+    public Path search(DotGraph graph, String src, String dst, SearchOptions options) {
+        SearchBudget budget = options.start();
+        GraphSnapshot snapshot = graph.freeze();
+        int start = startNode(snapshot, src);
+        int target = snapshot.id(dst);
+
+        SearchState fwd = acquireState();
+        SearchState bwd = acquireState();
+        fwd.prepare(snapshot.size());
+        bwd.prepare(snapshot.size());
+        try {
+            fwd.visit(start, -1);
+            fwd.addLast(start);
+            if (target < 0) {
+                return buildPath(fwd, snapshot, start);     // dst isn't in the graph, dead end
+            }
+            if (start == target) {
+                Path p = buildPath(fwd, snapshot, start);
+                p.setDestinationReached();
+                return p;
+            }
+            bwd.visit(target, -1);
+            bwd.addLast(target);
+
+            int lastForward = start;
+            while (!fwd.isFrontierEmpty() && !bwd.isFrontierEmpty()) {
+                boolean forward = fwd.frontierSize() <= bwd.frontierSize();
+                SearchState side = forward ? fwd : bwd;
+                SearchState other = forward ? bwd : fwd;
+
+                // expand the whole level, keeping the shortest meeting edge u -> v we run into
+                int bestU = -1;
+                int bestV = -1;
+                int bestLength = Integer.MAX_VALUE;
+                double bestWeight = 0;
+                for (int k = side.frontierSize(); k > 0; k--) {
+                    SearchOptions.StopReason stopped = budget.check(fwd.expandedCount() + bwd.expandedCount());
+                    if (stopped != null) {
+                        Path partial = buildPath(fwd, snapshot, lastForward);
+                        partial.setStopReason(stopped);
+                        return partial;
+                    }
+                    int u = side.pollFirst();
+                    if (forward) lastForward = u;
+                    int first = forward ? snapshot.firstEdge(u) : snapshot.firstInEdge(u);
+                    int end = forward ? snapshot.endEdge(u) : snapshot.endInEdge(u);
+                    side.countExpansion(end - first);
+                    for (int e = first; e < end; e++) {
+                        int v = forward ? snapshot.target(e) : snapshot.source(e);
+                        if (other.isVisited(v)) {
+                            int length = side.depth(u) + 1 + other.depth(v);
+                            if (length < bestLength) {
+                                bestLength = length;
+                                bestU = u;
+                                bestV = v;
+                                bestWeight = forward ? snapshot.weight(e) : snapshot.inWeight(e);
+                            }
+                        }
+                        if (!side.isVisited(v)) {
+                            // backward slots are reverse slots, join reads their weights with inWeight
+                            side.visit(v, u, e);
+                            side.addLast(v);
+                        }
+                    }
+                }
+
+                if (bestU >= 0) {
+                    // orient the meeting edge as (forward node, backward node)
+                    Path p = forward ? join(snapshot, fwd, bestU, bwd, bestV, bestWeight)
+                        : join(snapshot, fwd, bestV, bwd, bestU, bestWeight);
+                    p.setDestinationReached();
+                    return p;
+                }
+            }
+            return buildPath(fwd, snapshot, lastForward);
+        } finally {
+            releaseState(fwd);
+            releaseState(bwd);
+        }
+    }
+
+    // src ... a (forward parents), the meeting edge a -> b, then b ... dst (backward parents point towards dst)
+    private static Path join(GraphSnapshot snapshot, SearchState fwd, int a, SearchState bwd, int b, double meeting) {
+        PathNode path = fwd.pathTo(a, snapshot).append(snapshot.label(b), meeting);
+        for (int at = b; bwd.parent(at) >= 0; at = bwd.parent(at)) {
+            path = path.append(snapshot.label(bwd.parent(at)), snapshot.inWeight(bwd.via(at)));
+        }
+        return new Path(path);
+    }
+
+    // only used if someone drives this through the plain template loop, behaves like BFS then
+    @Override
+    protected void frontierAdd(SearchState state, int node) {
+        state.addLast(node);
+    }
+
+    @Override
+    protected int frontierRemove(SearchState state) {
+        return state.pollFirst();
+    }
+}
@@ -0,0 +1,14 @@
+// cooperative cancellation for searches, see SearchOptions.withCancellation
+// one token can be shared by any number of searches; cancel() stops all of them at their next check.
+
+public final class CancellationToken {
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
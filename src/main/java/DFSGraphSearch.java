@@ -1,32 +1,29 @@
-import java.util.ArrayDeque;
-import java.util.Deque;
-import java.util.List;
-
 // DFS implementation using the template pattern
 
 public class DFSGraphSearch extends GraphSearchTemplate {
     @Override
-    protected Deque<PathNode> initFrontier() {
-        return new ArrayDeque<>();
-    }
-    
-    @Override
-    protected void frontierAdd(PathNode node) {
-        frontier.addFirst(node);
+    protected void frontierAdd(SearchState state, int node) {
+        state.addFirst(node);
     }
 
     @Override
-    protected PathNode frontierRemove() {
-        return frontier.removeFirst();
+    protected int frontierRemove(SearchState state) {
+        return state.pollFirst();
     }
     
     @Override
-    protected List<String> planNext(String current, List<String> visitedNames) {
-        return super.planNext(current, visitedNames);
+    protected void planNext(GraphSnapshot graph, int current, VisitedView visited, IntList out) {
+        super.planNext(graph, current, visited, out);
+    }
+
+    // parents are fixed the moment a node is discovered, so one traversal serves every dst
+    @Override
+    protected boolean sharesTraversal() {
+        return true;
     }
 
     @Override
-    protected void onVisit(String pathSoFar) {
-        System.out.println("visiting " + pathSoFar);
+    protected boolean isDeterministic() {
+        return true;
     }
 }
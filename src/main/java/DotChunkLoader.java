@@ -0,0 +1,189 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+// parallel loader for big DOT files
+// the file is cut into chunks right after a newline, every chunk is memory-mapped and parsed on
+// its own thread into a flat buffer of node/edge records, then the buffers are replayed into one
+// DotGraph in file order, so the result is exactly what the sequential parser would build.
+// a cut only works if it falls between two top-level statements; a chunk that starts or ends
+// anywhere else (inside a subgraph, a multi-line statement, string or comment) fails to parse,
+// and then the whole file just goes through the sequential parser instead.
+
+final class DotChunkLoader {
+    // smaller files aren't worth splitting
+    static final long MIN_CHUNK_SIZE = 1 << 20;
+    // one mapping can't be bigger than 2GB, stay well under
+    private static final long MAX_CHUNK_SIZE = 1L << 30;
+
+    private DotChunkLoader() {
+    }
+
+    // picks the chunk count from the file size and the executor's parallelism
+    static DotGraph load(Path file, int parallelism, Executor executor) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long chunks = Math.min(size / MIN_CHUNK_SIZE, parallelism * 2L);
+            chunks = Math.max(chunks, (size + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+            return load(channel, (int) Math.max(1, chunks), executor);
+        }
+    }
+
+    // package-private so tests can force lots of tiny chunks
+    static DotGraph load(FileChannel channel, int chunks, Executor executor) throws IOException {
+        long[] bounds = boundaries(channel, chunks);
+        if (bounds.length <= 2) {
+            return sequential(channel);
+        }
+
+        int count = bounds.length - 1;
+        List<CompletableFuture<ParsedChunk>> tasks = new ArrayList<>(count);
+        for (int c = 0; c < count; c++) {
+            final int index = c;
+            tasks.add(CompletableFuture.supplyAsync(() -> parse(channel, bounds, index), executor));
+        }
+
+        ParsedChunk[] parsed = new ParsedChunk[count];
+        try {
+            for (int c = 0; c < count; c++) {
+                parsed[c] = tasks.get(c).join();
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof ChunkMisaligned) {
+                // wait for the rest so nobody is still reading the channel, then start over
+                CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).exceptionally(t -> null).join();
+                return sequential(channel);
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+
+        // merge in file order; edges without a weight of their own pick up the top-level
+        // edge default left by the chunks before them
+        DotGraph graph = new DotGraph();
+        double inherited = Double.NaN;
+        for (ParsedChunk chunk : parsed) {
+            chunk.replay(graph, inherited);
+            if (!Double.isNaN(chunk.edgeDefault)) {
+                inherited = chunk.edgeDefault;
+            }
+        }
+        return graph;
+    }
+
+    // chunk start offsets plus the file size at the end, every start right after a '\n'
+    private static long[] boundaries(FileChannel channel, int chunks) throws IOException {
+        long size = channel.size();
+        long[] bounds = new long[chunks + 1];
+        int count = 1;      // bounds[0] = 0
+        ByteBuffer window = ByteBuffer.allocate(1 << 12);
+        for (int c = 1; c < chunks; c++) {
+            long at = Math.max(size * c / chunks, bounds[count - 1]);
+            long cut = nextLineStart(channel, at, window);
+            if (cut > bounds[count - 1] && cut < size) {
+                bounds[count++] = cut;
+            }
+        }
+        bounds[count++] = size;
+        return Arrays.copyOf(bounds, count);
+    }
+
+    // offset just past the first '\n' at or after pos (the file size if there isn't one)
+    private static long nextLineStart(FileChannel channel, long pos, ByteBuffer window) throws IOException {
+        while (true) {
+            window.clear();
+            int n = channel.read(window, pos);
+            if (n <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < n; i++) {
+                if (window.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += n;
+        }
+    }
+
+    private static ParsedChunk parse(FileChannel channel, long[] bounds, int c) {
+        ParsedChunk chunk = new ParsedChunk();
+        try {
+            long start = bounds[c];
+            ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, bounds[c + 1] - start);
+            DotParser parser = new DotParser(new DotTokenizer(bytes), chunk);
+            chunk.edgeDefault = parser.parseChunk(c == 0, c == bounds.length - 2);
+        } catch (IOException e) {
+            // syntax errors too: the sequential parser will report those with the right line number
+            throw new ChunkMisaligned();
+        }
+        return chunk;
+    }
+
+    private static DotGraph sequential(FileChannel channel) throws IOException {
+        channel.position(0);
+        return DotGraph.parseGraph(channel);
+    }
+
+    // a chunk couldn't be parsed on its own
+    private static final class ChunkMisaligned extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ChunkMisaligned() {
+            super(null, null, false, false);
+        }
+    }
+
+    // per-thread buffer of everything one chunk reported, in order.
+    // a node statement is stored as (id, null)
+    private static final class ParsedChunk implements DotParser.Listener {
+        private String[] from = new String[1024];
+        private String[] to = new String[1024];
+        private double[] weight = new double[1024];
+        private int size;
+        double edgeDefault = Double.NaN;
+
+        @Override
+        public void node(String id) {
+            add(id, null, Double.NaN);
+        }
+
+        @Override
+        public void edge(String start, String end, double w) {
+            add(start, end, w);
+        }
+
+        private void add(String a, String b, double w) {
+            if (size == from.length) {
+                from = Arrays.copyOf(from, size * 2);
+                to = Arrays.copyOf(to, size * 2);
+                weight = Arrays.copyOf(weight, size * 2);
+            }
+            from[size] = a;
+            to[size] = b;
+            weight[size] = w;
+            size++;
+        }
+
+        void replay(DotGraph graph, double inherited) {
+            DotParser.Listener sink = graph.parseListener();
+            for (int i = 0; i < size; i++) {
+                if (to[i] == null) {
+                    sink.node(from[i]);
+                }
+                else {
+                    sink.edge(from[i], to[i], Double.isNaN(weight[i]) ? inherited : weight[i]);
+                }
+            }
+        }
+    }
+}
@@ -1,46 +1,96 @@
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.HashMap;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Scanner;
 import java.util.Set;
-import  java.util.stream.Collectors;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 // graph class! yay :)
 public class DotGraph {
 
     // enum for BFS/DFS search stuff
-    public enum Algorithm { BFS, DFS, RANDOM_FULL, RANDOM_UNVISITED, RANDOM_BACKTRACK }
+    public enum Algorithm { BFS, DFS, RANDOM_FULL, RANDOM_UNVISITED, RANDOM_BACKTRACK, BIDIRECTIONAL_BFS, DIJKSTRA, ASTAR, PARALLEL_BFS }
 
-    private static final String DOT_HEADER = "digraph {";
-    private static final String DOT_FOOTER = "}";
+    // output formats for export (DOT, or the same text toString gives)
+    public enum ExportFormat { DOT, TEXT }
 
     // data structs for nodes/edges
+    // every label is interned once in symbols; nodes holds the canonical (upper-cased) instances,
+    // edges are packed symbol id pairs, outEdges[id] lists id's targets and inEdges[id] its sources.
+    // the lists start out in insertion order; removing an edge moves the list's last entry into its spot
+    private final SymbolTable symbols;
     private final Set<String> nodes;
-    private final Set<Edge> edges;
+    private final EdgeSet edges;
+    private IntList[] outEdges;
+    private IntList[] inEdges;
 
+    // never changed after the constructor, so concurrent searches can read it freely.
+    // ASTAR isn't in it: setHeuristic swaps that one, through the volatile field
     private final Map<Algorithm, GraphSearchTemplate> searchStrats;
+    private volatile WeightedGraphSearch astar = new WeightedGraphSearch(SearchHeuristic.NONE);
+
+    private static final GraphRenderer DEFAULT_RENDERER = new GraphRenderer();
+    private GraphRenderer renderer = DEFAULT_RENDERER;
+
+    // bumped by every mutation, used to tell when a frozen snapshot went stale
+    private long version;
+    private volatile GraphSnapshot snapshot;
+    // false for graphs loaded from a snapshot file until the node/edge sets are first needed
+    private volatile boolean materialized = true;
+    // null unless enablePathCache was called
+    private volatile PathCache pathCache;
+    // whether searches check the snapshot's ReachabilityIndex first
+    private volatile boolean reachabilityChecks;
+    // null unless setSearchObserver was called
+    private volatile SearchObserver searchObserver;
 
 
     // graph constructor
     public DotGraph() {
+        symbols = new SymbolTable();
         nodes = new LinkedHashSet<>();
-        edges = new LinkedHashSet<>();
+        edges = new EdgeSet();
+        outEdges = new IntList[16];
+        inEdges = new IntList[16];
 
         // gotta init searchStrats since its final
-        searchStrats = new HashMap<>();
+        searchStrats = new EnumMap<>(Algorithm.class);
         searchStrats.put(Algorithm.BFS, new BFSGraphSearch());
         searchStrats.put(Algorithm.DFS, new DFSGraphSearch());
         searchStrats.put(Algorithm.RANDOM_FULL, new RWGraphSearch(RWGraphSearch.Mode.FULLY_RANDOM));
         searchStrats.put(Algorithm.RANDOM_UNVISITED, new RWGraphSearch(RWGraphSearch.Mode.RANDOM_UNVISITED));
         searchStrats.put(Algorithm.RANDOM_BACKTRACK, new RWGraphSearch(RWGraphSearch.Mode.HISTORY_BACKTRACK));
+        searchStrats.put(Algorithm.BIDIRECTIONAL_BFS, new BidirectionalBFSGraphSearch());
+        searchStrats.put(Algorithm.DIJKSTRA, new WeightedGraphSearch());
+        searchStrats.put(Algorithm.PARALLEL_BFS, new ParallelBFSGraphSearch());
     }
 
     Algorithm getBFS() { return Algorithm.BFS; }
@@ -48,48 +98,122 @@ public class DotGraph {
     Algorithm getRANDOM_FULL() { return Algorithm.RANDOM_FULL; }
     Algorithm getRANDOM_UNVISITED() { return Algorithm.RANDOM_UNVISITED; }
     Algorithm getRANDOM_BACKTRACK() { return Algorithm.RANDOM_BACKTRACK; }
+    Algorithm getBIDIRECTIONAL_BFS() { return Algorithm.BIDIRECTIONAL_BFS; }
+    Algorithm getDIJKSTRA() { return Algorithm.DIJKSTRA; }
+    Algorithm getASTAR() { return Algorithm.ASTAR; }
+    Algorithm getPARALLEL_BFS() { return Algorithm.PARALLEL_BFS; }
+
+    // heuristic used by Algorithm.ASTAR (defaults to none, which makes it behave like Dijkstra)
+    public void setHeuristic(SearchHeuristic heuristic) {
+        astar = new WeightedGraphSearch(heuristic);
+        PathCache cache = pathCache;
+        if (cache != null) {
+            cache.clear();      // cached A* paths were found with the old heuristic
+        }
+    }
 
     // parse dot file and creates its graph
+    // streams the file through DotTokenizer/DotParser, so memory use doesn't depend on file size
      
     public static DotGraph parseGraph(String filepath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.READ)) {
+            return parseGraph(channel);
+        }
+    }
+
+    // parse DOT text from any channel (file, socket, decompressing stream, ...)
+    public static DotGraph parseGraph(ReadableByteChannel channel) throws IOException {
         DotGraph graph = new DotGraph();
-        List<String> lines = Files.readAllLines(Paths.get(filepath));
+        new DotParser(new DotTokenizer(channel), graph.parseListener()).parse();
+        return graph;
+    }
 
-        for (String line : lines) {
-            line = line.trim();
-            // skip empty or brace/digraph lines
-            if (line.isEmpty() || line.startsWith("digraph") || line.startsWith("{") || line.startsWith("}")) {
-                continue;
+    // same result as parseGraph, but big files are split into chunks that are parsed on the
+    // common fork-join pool (see DotChunkLoader). small files just go through parseGraph
+    public static DotGraph parseGraphParallel(String filepath) throws IOException {
+        return DotChunkLoader.load(Paths.get(filepath), ForkJoinPool.getCommonPoolParallelism(), ForkJoinPool.commonPool());
+    }
+
+    // parallel load on the given executor
+    public static DotGraph parseGraphParallel(String filepath, Executor executor) throws IOException {
+        return DotChunkLoader.load(Paths.get(filepath), Runtime.getRuntime().availableProcessors(), executor);
+    }
+
+    // writes the graph in the binary snapshot format (see SnapshotFile), for loadSnapshot
+    public void saveSnapshot(String filepath) throws IOException {
+        SnapshotFile.write(freeze(), Paths.get(filepath));
+    }
+
+    // loads a graph written by saveSnapshot. the file is memory-mapped and searches run straight
+    // off it, so this is quick no matter how big the graph is. the node/edge sets are only built
+    // the first time something needs them (a mutation, getNodes, toString, ...), and labels come
+    // back upper-cased since that's how snapshots store them
+    public static DotGraph loadSnapshot(String filepath) throws IOException {
+        DotGraph graph = new DotGraph();
+        graph.snapshot = SnapshotFile.read(Paths.get(filepath), graph.version);
+        graph.materialized = false;
+        return graph;
+    }
+
+    // fills the node/edge sets of a graph loaded with loadSnapshot from its snapshot.
+    // doesn't touch the version, so the snapshot stays valid until the first real change
+    private void materialize() {
+        if (materialized) {
+            return;
+        }
+        synchronized (this) {
+            if (materialized) {
+                return;
+            }
+            // snapshot ids are interned in order, so they come out as the same symbol ids
+            GraphSnapshot s = snapshot;
+            long v0 = version;
+            for (int v = 0; v < s.size(); v++) {
+                linkNode(symbols.intern(s.label(v)), null);
             }
-            // remove trailing semicolon
-            line = stripSemicolon(line);
-            // in format "x -> y"
-            String[] parts = line.split("->");
-            if (parts.length == 2) {
-                String start = parts[0].trim();
-                String end = parts[1].trim();
-                // add nodes + edge
-                graph.addNode(start);
-                graph.addNode(end);
-                graph.addEdge(start, end);
+            for (int u = 0; u < s.size(); u++) {
+                for (int e = s.firstEdge(u); e < s.endEdge(u); e++) {
+                    linkEdge(u, s.target(e), s.weight(e), true, null);
+                }
             }
+            version = v0;
+            materialized = true;
         }
-        return graph;
     }
 
-    /** Helper to strip semicolon (extracted method) */
-    private static String stripSemicolon(String line) {
-        return line.endsWith(";") ? line.substring(0, line.length() - 1) : line;
+    // feeds parsed nodes/edges into this graph
+    DotParser.Listener parseListener() {
+        return new DotParser.Listener() {
+            @Override
+            public void node(String id) {
+                addNode(id);
+            }
+
+            @Override
+            public void edge(String from, String to, double weight) {
+                if (Double.isNaN(weight)) {
+                    addEdge(from, to);
+                }
+                else {
+                    addEdge(from, to, weight);
+                }
+            }
+        };
     }
 
     // add a single node; will NOT add duplicates
     public void addNode(String label) {
-        nodes.add(label.toUpperCase());
+        materialize();
+        linkNode(symbols.intern(label), null);
     }
 
-    // remove a single node
+    // remove a single node along with every edge in or out of it, O(degree)
     public void removeNode(String label) {
-        nodes.remove(label);
+        materialize();
+        int id = symbols.id(label);
+        if (id >= 0) {
+            unlinkNode(id, null);
+        }
     }
 
     // add multiple nodes
@@ -108,22 +232,276 @@ public class DotGraph {
 
     // add directed edge to the graph, checking for duplicates
     public void addEdge(String startLabel, String endLabel) {
-        addNode(startLabel);
-        addNode(endLabel);
-        edges.add(new Edge(startLabel, endLabel));
+        materialize();
+        linkEdge(symbols.intern(startLabel), symbols.intern(endLabel), Edge.DEFAULT_WEIGHT, false, null);
+    }
+
+    // add a weighted directed edge; adding an existing edge again just updates its weight
+    public void addEdge(String startLabel, String endLabel, double weight) {
+        checkWeight(weight);
+        materialize();
+        linkEdge(symbols.intern(startLabel), symbols.intern(endLabel), weight, true, null);
+    }
+
+    static void checkWeight(double weight) {
+        if (!(weight >= 0) || Double.isInfinite(weight)) {
+            throw new IllegalArgumentException("Edge weight must be finite and non-negative: " + weight);
+        }
     }
 
     // remove directed edge from the graph
     public void removeEdge(String startLabel, String endLabel) {
-        edges.remove(new Edge(startLabel, endLabel));
+        materialize();
+        int u = symbols.id(startLabel);
+        int v = symbols.id(endLabel);
+        if (u >= 0 && v >= 0) {
+            unlinkEdge(u, v, null);
+        }
+    }
+
+    // starts a batch of changes that get applied together, see GraphBatch
+    public GraphBatch batch() {
+        return new GraphBatch(this);
+    }
+
+    // applies a batch in order. the whole batch counts as one mutation: the version goes up by
+    // one (if anything changed at all), so snapshots / caches are invalidated once, not per change
+    GraphChanges apply(List<GraphBatch.Op> ops) {
+        materialize();
+        long before = version;
+        GraphChanges changes = new GraphChanges(before);
+        for (GraphBatch.Op op : ops) {
+            switch (op.kind()) {
+                case ADD_NODE:
+                    linkNode(symbols.intern(op.from()), changes);
+                    break;
+                case REMOVE_NODE: {
+                    int id = symbols.id(op.from());
+                    if (id >= 0) unlinkNode(id, changes);
+                    break;
+                }
+                case ADD_EDGE:
+                    linkEdge(symbols.intern(op.from()), symbols.intern(op.to()),
+                        Double.isNaN(op.weight()) ? Edge.DEFAULT_WEIGHT : op.weight(), !Double.isNaN(op.weight()), changes);
+                    break;
+                case REMOVE_EDGE: {
+                    int u = symbols.id(op.from());
+                    int v = symbols.id(op.to());
+                    if (u >= 0 && v >= 0) unlinkEdge(u, v, changes);
+                    break;
+                }
+            }
+        }
+        if (version != before) {
+            version = before + 1;
+        }
+        changes.finish(version);
+        return changes;
+    }
+
+    // the index maintenance behind every mutation; changes (if not null) gets told what happened
+
+    private void linkNode(int id, GraphChanges changes) {
+        String key = symbols.key(id);
+        if (nodes.add(key)) {
+            version++;
+            if (changes != null) changes.nodeAdded(key);
+        }
+    }
+
+    // an edge added without an explicit weight never overwrites the weight of an existing one
+    private void linkEdge(int u, int v, double weight, boolean explicitWeight, GraphChanges changes) {
+        linkNode(u, changes);
+        linkNode(v, changes);
+        long key = EdgeSet.pack(u, v);
+        int at = edges.indexOf(key);
+        if (at < 0) {
+            at = edges.add(key, weight);
+            IntList out = list(u, true);
+            IntList in = list(v, false);
+            edges.setOutPos(at, out.size());
+            edges.setInPos(at, in.size());
+            out.add(v);
+            in.add(u);
+            version++;
+            if (changes != null) changes.edgeAdded(symbols.key(u), symbols.key(v));
+        }
+        else if (explicitWeight && edges.weight(at) != weight) {
+            edges.setWeight(at, weight);
+            version++;
+            if (changes != null) changes.edgeReweighted(symbols.key(u), symbols.key(v));
+        }
+    }
+
+    // O(1): the edge's slots in both adjacency lists are filled with those lists' last entries
+    private void unlinkEdge(int u, int v, GraphChanges changes) {
+        long key = EdgeSet.pack(u, v);
+        int at = edges.indexOf(key);
+        if (at < 0) {
+            return;
+        }
+        IntList out = outEdges[u];
+        int pos = edges.outPos(at);
+        int moved = out.removeLast();
+        if (pos < out.size()) {
+            out.set(pos, moved);
+            edges.setOutPos(edges.indexOf(EdgeSet.pack(u, moved)), pos);
+        }
+        IntList in = inEdges[v];
+        pos = edges.inPos(at);
+        moved = in.removeLast();
+        if (pos < in.size()) {
+            in.set(pos, moved);
+            edges.setInPos(edges.indexOf(EdgeSet.pack(moved, v)), pos);
+        }
+        edges.remove(key);
+        version++;
+        if (changes != null) changes.edgeRemoved(symbols.key(u), symbols.key(v));
+    }
+
+    // O(degree): every edge in or out of the node goes first
+    private void unlinkNode(int id, GraphChanges changes) {
+        IntList out = id < outEdges.length ? outEdges[id] : null;
+        while (out != null && !out.isEmpty()) {
+            unlinkEdge(id, out.get(out.size() - 1), changes);
+        }
+        IntList in = id < inEdges.length ? inEdges[id] : null;
+        while (in != null && !in.isEmpty()) {
+            unlinkEdge(in.get(in.size() - 1), id, changes);
+        }
+        String key = symbols.key(id);
+        if (nodes.remove(key)) {
+            version++;
+            if (changes != null) changes.nodeRemoved(key);
+        }
+    }
+
+    // out- or in-list of symbol id u, created on first use
+    private IntList list(int u, boolean outgoing) {
+        if (u >= outEdges.length) {
+            int size = Math.max(u + 1, outEdges.length * 2);
+            outEdges = Arrays.copyOf(outEdges, size);
+            inEdges = Arrays.copyOf(inEdges, size);
+        }
+        IntList[] lists = outgoing ? outEdges : inEdges;
+        IntList list = lists[u];
+        if (list == null) {
+            list = new IntList(2);
+            lists[u] = list;
+        }
+        return list;
+    }
+
+    // live view of the edges as Edge objects (made on the fly, in insertion order)
+    private Collection<Edge> edgeView() {
+        return new AbstractCollection<Edge>() {
+            @Override
+            public int size() {
+                return edges.size();
+            }
+
+            @Override
+            public Iterator<Edge> iterator() {
+                return new Iterator<Edge>() {
+                    private int next = skip(0);
+
+                    private int skip(int i) {
+                        while (i < edges.logSize() && !edges.isLive(i)) {
+                            i++;
+                        }
+                        return i;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < edges.logSize();
+                    }
+
+                    @Override
+                    public Edge next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        long e = edges.edgeAt(next);
+                        Edge edge = new Edge(symbols.display(EdgeSet.src(e)), symbols.display(EdgeSet.dst(e)), edges.weight(next));
+                        next = skip(next + 1);
+                        return edge;
+                    }
+                };
+            }
+        };
     }
 
     public Set<String> getNodes() {
+        materialize();
         return nodes;
     }
 
+    // current mutation count of the graph
+    public long getVersion() {
+        return version;
+    }
+
+    // returns an immutable CSR snapshot of the graph (cached until the graph changes)
+    // safe to call from many searching threads at once; mutating the graph while
+    // searches are running still needs outside synchronization
+    public GraphSnapshot freeze() {
+        GraphSnapshot s = snapshot;
+        if (s != null && s.version == version) {
+            return s;
+        }
+        synchronized (this) {
+            s = snapshot;
+            if (s == null || s.version != version) {
+                s = buildSnapshot();
+                snapshot = s;
+            }
+            return s;
+        }
+    }
+
+    private GraphSnapshot buildSnapshot() {
+        int n = nodes.size();
+        String[] labels = nodes.toArray(new String[n]);
+        // symbol id -> snapshot id, -1 for symbols that aren't nodes (anymore)
+        // (edges always go between nodes: removing a node removes its edges)
+        int[] ids = new int[symbols.size()];
+        Arrays.fill(ids, -1);
+        int[] symbolOf = new int[n];
+        for (int i = 0; i < n; i++) {
+            symbolOf[i] = symbols.id(labels[i]);
+            ids[symbolOf[i]] = i;
+        }
+
+        int[] offsets = new int[n + 1];
+        int[] targets = new int[edges.size()];
+        double[] weights = new double[edges.size()];
+        boolean weighted = false;
+        int count = 0;
+        for (int u = 0; u < n; u++) {
+            offsets[u] = count;
+            int su = symbolOf[u];
+            IntList out = su < outEdges.length ? outEdges[su] : null;
+            if (out == null) continue;
+            for (int i = 0; i < out.size(); i++) {
+                int v = ids[out.get(i)];
+                double w = edges.weight(edges.indexOf(EdgeSet.pack(su, out.get(i))));
+                weights[count] = w;
+                weighted |= w != Edge.DEFAULT_WEIGHT;
+                targets[count++] = v;
+            }
+        }
+        offsets[n] = count;
+        if (count < targets.length) {
+            targets = Arrays.copyOf(targets, count);
+            weights = Arrays.copyOf(weights, count);
+        }
+        return new GraphSnapshot(version, labels, offsets, targets, weighted ? weights : null);
+    }
+
     // output all nodes to a string
     public String nodesToString() {
+        materialize();
         StringBuilder sb = new StringBuilder();
         sb.append("").append(nodes).append("\n");
         return sb.toString();
@@ -131,8 +509,9 @@ public class DotGraph {
 
     // output all edges to a string
     public String edgesToString() {
+        materialize();
         StringBuilder sb = new StringBuilder();
-        for (Edge e : edges) {
+        for (Edge e : edgeView()) {
             sb.append("  ").append(e).append("\n");
         }
         return sb.toString();
@@ -142,171 +521,383 @@ public class DotGraph {
     // returns a string holding the data of the graph
     @Override
     public String toString() {
-        StringBuilder sb1 = new StringBuilder();
-        StringBuilder sb2 = new StringBuilder();
-        sb1.append(nodes.size()).append("): ").append(nodes).append("\n");
-        sb2.append(edges.size()).append("):\n");
-        for (Edge e : edges) {
-            sb2.append("  ").append(e).append("\n");
+        materialize();
+        StringWriter out = new StringWriter();
+        try {
+            GraphExporter.write(ExportFormat.TEXT, nodes, edgeView(), out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);    // StringWriter never throws
         }
-        String s1 = sb1.toString();
-        String s2 = sb2.toString();
-        String returnString = "Nodes (" + s1.toLowerCase() + "Edges (" + s2.toLowerCase();
-
-        return returnString;
+        return out.toString();
     }
 
-    // outputs the graph in text format
+    // outputs the graph in text format (gzipped if the path ends in .gz)
     public void outputGraphToText(String filepath) throws IOException {
-        try (FileWriter writer = new FileWriter(filepath)) {
-            writer.write(toString());
-        }
+        exportToFile(ExportFormat.TEXT, filepath);
     }
 
-    // output graph to dot file
+    // output graph to dot file (gzipped if the path ends in .gz)
     public void outputDOTGraph(String filepath) throws IOException {
-        try (FileWriter writer = new FileWriter(filepath)) {
-            writer.write(DOT_HEADER + "\n");
-            // write nodes
-            for (String node : nodes) {
-                writer.write("    " + node + ";\n");
-            }
-            // write edges
-            for (Edge e : edges) {
-                writer.write("    " + e.getStart() + " -> " + e.getEnd() + ";\n");
-            }
-            writer.write(DOT_FOOTER);
+        exportToFile(ExportFormat.DOT, filepath);
+    }
+
+    // streams the graph to a writer, one node / edge at a time. the writer is flushed, not closed
+    public void export(ExportFormat format, Writer out) throws IOException {
+        materialize();
+        GraphExporter.write(format, nodes, edgeView(), out);
+    }
+
+    // streams the graph as UTF-8, optionally gzipped. the stream is flushed, not closed
+    public void export(ExportFormat format, OutputStream out, boolean gzip) throws IOException {
+        materialize();
+        GraphExporter.write(format, nodes, edgeView(), out, gzip);
+    }
+
+    // same, onto a channel (file, socket, pipe, ...)
+    public void export(ExportFormat format, WritableByteChannel channel, boolean gzip) throws IOException {
+        export(format, Channels.newOutputStream(channel), gzip);
+    }
+
+    private void exportToFile(ExportFormat format, String filepath) throws IOException {
+        try (OutputStream out = Files.newOutputStream(Paths.get(filepath))) {
+            export(format, out, filepath.endsWith(".gz"));
         }
     }
 
     // output graph to image file (i will say idk if .jpg works but ik .png does lol so yay)
+    // goes through the graph's GraphRenderer, so an unchanged graph is only rendered once
     public void outputGraphics(String filepath, String format) throws IOException, InterruptedException {
-        File tempDot = File.createTempFile("tempGraph", ".dot");
-        outputDOTGraph(tempDot.getAbsolutePath());
+        Files.write(Paths.get(filepath), renderer.render(this, format));
+    }
 
-        ProcessBuilder pb = new ProcessBuilder("dot", "-T" + format, tempDot.getAbsolutePath(), "-o", filepath);
-        Process process = pb.start();
+    // swap in a different Graphviz command / concurrency cap / cache (all graphs share one by default)
+    public void setRenderer(GraphRenderer renderer) {
+        this.renderer = renderer;
+    }
+
+    // return all neighbors of a given node, O(out-degree) thanks to the adjacency index
+    public List<String> getNeighbors(String node) {
+        materialize();
+        int id = symbols.id(node);
+        IntList out = id >= 0 && id < outEdges.length ? outEdges[id] : null;
+        if (out == null) {
+            return Collections.emptyList();
+        }
+        List<String> neighbors = new ArrayList<>(out.size());
+        for (int i = 0; i < out.size(); i++) {
+            neighbors.add(symbols.display(out.get(i)));
+        }
+        return neighbors;
+    }
+
+    // delegates BFS/DFS/Random searches to template-based implementations using strategy pattern
+    // with an observer set or a JFR recording on, each call is also timed and its work counted
+    public Path GraphSearch(String src, String dst, Algorithm algo) {
+        return GraphSearch(src, dst, algo, SearchOptions.NONE);
+    }
 
-        // capture errors
-        BufferedReader stdError = new BufferedReader(new InputStreamReader(process.getErrorStream()));
-        String s;
-        StringBuilder errorOutput = new StringBuilder();
-        while ((s = stdError.readLine()) != null) {
-            errorOutput.append(s).append("\n");
+    // GraphSearch with a deadline / node budget / cancellation token. a search that runs into one of
+    // them (or whose thread gets interrupted) returns a partial path, see Path.getStopReason()
+    public Path GraphSearch(String src, String dst, Algorithm algo, SearchOptions options) {
+        SearchObserver observer = searchObserver;
+        SearchEvent event = new SearchEvent();
+        if (observer == null && !event.isEnabled()) {
+            return search(src, dst, algo, options);
         }
 
-        int exitCode = process.waitFor();
-        if (exitCode != 0) {
-            throw new RuntimeException("Graphviz process failed: " + errorOutput.toString());
+        event.begin();
+        SearchProbe probe = SearchProbe.start();
+        long t0 = System.nanoTime();
+        Path p;
+        try {
+            p = search(src, dst, algo, options);
+        } finally {
+            probe.stop();
         }
+        long nanos = System.nanoTime() - t0;
+        event.end();
 
-        tempDot.delete();
+        report(observer, event, algo, src, dst, p, probe, nanos);
+        return p;
     }
 
-    // return all neighbors of a given node
-    public List<String> getNeighbors(String node) {
-        return edges.stream()
-                    .filter(e -> e.getStart().equalsIgnoreCase(node))
-                    .map(Edge::getEnd)
-                    .collect(Collectors.toList());
+    // hands one search's trace to the JFR event and the observer. a null probe means the answer
+    // didn't cost a traversal of its own, so it reports 0 work like a cache hit does
+    private static void report(SearchObserver observer, SearchEvent event, Algorithm algo, String src, String dst,
+                               Path p, SearchProbe probe, long nanos) {
+        long expanded = probe == null ? 0 : probe.expanded;
+        long scanned = probe == null ? 0 : probe.scanned;
+        int peakFrontier = probe == null ? 0 : probe.peakFrontier;
+        boolean reached = p != null && p.doesPathReachDestination();
+        int length = p == null ? 0 : p.length();
+        SearchOptions.StopReason stopped = p == null ? null : p.getStopReason();
+        if (event.shouldCommit()) {
+            event.algorithm = algo.name();
+            event.src = src;
+            event.dst = dst;
+            event.nodesExpanded = expanded;
+            event.edgesScanned = scanned;
+            event.peakFrontier = peakFrontier;
+            event.pathLength = length;
+            event.reached = reached;
+            event.stopReason = stopped == null ? null : stopped.name();
+            event.commit();
+        }
+        if (observer != null) {
+            observer.searchFinished(new SearchTrace(algo, src, dst, expanded, scanned,
+                peakFrontier, length, reached, stopped, nanos));
+        }
     }
 
-    // delegates BFS/DFS/Random searches to template-based implementations using strategy pattern
-    public Path GraphSearch(String src, String dst, Algorithm algo) {
-        GraphSearchTemplate strategy = searchStrats.get(algo);
+    private GraphSearchTemplate strategy(Algorithm algo) {
+        return algo == Algorithm.ASTAR ? astar : searchStrats.get(algo);
+    }
+
+    private Path search(String src, String dst, Algorithm algo, SearchOptions options) {
+        GraphSearchTemplate strategy = strategy(algo);
         if (strategy == null) {     // if its not a real strat then it explodes but this shoooould never happen
             throw new IllegalArgumentException("Unknown algorithm: " + algo);
         }
-        Path p = strategy.search(this, src, dst);
+        if (reachabilityChecks) {
+            Path deadEnd = unreachable(src, dst);
+            if (deadEnd != null) {
+                return deadEnd;
+            }
+        }
+        PathCache cache = pathCache;
+        if (cache == null || !strategy.isDeterministic()) {
+            return strategy.search(this, src, dst, options);
+        }
+        long v = version;
+        PathCache.Entry cached = cache.lookup(algo, src, dst, v);
+        if (cached != null) {
+            return cached.path();
+        }
+        Path p = strategy.search(this, src, dst, options);
+        if (!p.isPartial()) {
+            cache.store(algo, src, dst, v, p);
+        }
         return p;
     }
 
+    // loopless src -> dst paths, cheapest first (fewest hops on an unweighted graph), found lazily
+    // with Yen's algorithm: shortestPaths("a", "f").limit(3).toList() is the 3 shortest routes.
+    // works on the current snapshot, later changes to the graph don't affect a stream already made
+    public Stream<Path> shortestPaths(String src, String dst) {
+        GraphSnapshot s = freeze();
+        return stream(new ShortestPathIterator(s, GraphSearchTemplate.startNode(s, src), s.id(dst)));
+    }
 
-    public void runRandomSearch(DotGraph graph, String s, String src, String dst) {
+    // every simple src -> dst path of at most maxDepth edges, depth first in edge order, found
+    // lazily: memory stays at one path plus per-node search arrays however many paths there are
+    public Stream<Path> simplePaths(String src, String dst, int maxDepth) {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("Max depth must not be negative: " + maxDepth);
+        }
+        GraphSnapshot s = freeze();
+        return stream(new SimplePathIterator(s, GraphSearchTemplate.startNode(s, src), s.id(dst), maxDepth));
+    }
 
-        if (s == "full") {
-
-            System.out.println("Fully Random Search:");
-
-            int i = 0;
-            int numSuccesses = 0;
-            int diffPaths = 0;
-            while (i < 5) {
-                if (numSuccesses < 2) {
-                    // ensure that the first 2 go arounds always find the target node
-                    Path currPath = graph.GraphSearch(src, dst, Algorithm.RANDOM_FULL);
-                    if (currPath.doesPathReachDestination() == true) {
-                        i++;
-                        numSuccesses++;
-                        System.out.println("Attempt " + i + ": " + currPath.toString());
-                    }
-                }
+    private static Stream<Path> stream(Iterator<Path> paths) {
+        return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(paths, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
 
-                else {
-                    Path currPath = graph.GraphSearch(src, dst, Algorithm.RANDOM_FULL);
-                    i++;
-                    System.out.println("Attempt " + i + ": " + currPath.toString());
-                    if (currPath.doesPathReachDestination() == true) {
-                        numSuccesses++;
-                    }
-                }
-            }
+    // reports every GraphSearch call (algorithm, nodes expanded, edges scanned, peak frontier,
+    // path length, wall time) to the observer, e.g. a SearchMetrics. null turns it off again.
+    public void setSearchObserver(SearchObserver observer) {
+        searchObserver = observer;
+    }
+
+    public SearchObserver getSearchObserver() {
+        return searchObserver;
+    }
+
+    // puts a bounded LRU cache in front of GraphSearch for the deterministic algorithms
+    // (BFS, DFS, BIDIRECTIONAL_BFS, DIJKSTRA, ASTAR). any mutation of the graph invalidates it.
+    // returns the cache, for its hit/miss stats. replaces any cache that was there before.
+    public PathCache enablePathCache(int maxEntries) {
+        PathCache cache = new PathCache(maxEntries);
+        pathCache = cache;
+        return cache;
+    }
+
+    public void disablePathCache() {
+        pathCache = null;
+    }
+
+    // the current path cache, null if caching is off
+    public PathCache getPathCache() {
+        return pathCache;
+    }
+
+    // makes GraphSearch / GraphSearchBatch ask the reachability index before searching, so a dst
+    // that can't be reached gets its dead end right away instead of after exploring everything
+    // reachable from src. that dead end is just src itself, not the last node a search expanded.
+    // the index is built lazily with each new snapshot, i.e. on the first search after a change.
+    public void enableReachabilityIndex() {
+        reachabilityChecks = true;
+    }
+
+    public void disableReachabilityIndex() {
+        reachabilityChecks = false;
+    }
+
+    // whether there's a path from src to dst, false if either isn't in the graph
+    public boolean canReach(String src, String dst) {
+        GraphSnapshot s = freeze();
+        int u = s.id(src);
+        int v = s.id(dst);
+        return u >= 0 && v >= 0 && s.reachability().reaches(u, v);
+    }
+
+    // dead-end path for a query the index rules out, null if it has to be searched
+    // (an unknown src is left to the search, which throws for it)
+    private Path unreachable(String src, String dst) {
+        GraphSnapshot s = freeze();
+        int u = s.id(src);
+        if (u < 0) {
+            return null;
         }
-        else if (s == "unvisited") {
+        int v = s.id(dst);
+        if (v >= 0 && s.reachability().reaches(u, v)) {
+            return null;
+        }
+        return new Path(new PathNode(s.label(u)));
+    }
 
-            System.out.println("Unvisited Random Search:");
+    // runs a whole batch of (src, dst) queries in parallel on the common fork-join pool
+    public List<Path> GraphSearchBatch(Collection<PathQuery> queries, Algorithm algo) {
+        return GraphSearchBatch(queries, algo, ForkJoinPool.commonPool());
+    }
 
-            int i = 0;
-            int numSuccesses = 0;
-            while (i < 5) {
-                if (numSuccesses < 2) {
-                    // ensure that the first 2 go arounds always find the target node
-                    Path currPath = graph.GraphSearch(src, dst, Algorithm.RANDOM_UNVISITED);
-                    if (currPath.doesPathReachDestination() == true) {
-                        i++;
-                        numSuccesses++;
-                        System.out.println("Attempt " + i + ": " + currPath.toString());
-                    }
-                }
+    // runs a whole batch of (src, dst) queries on the given executor (fork-join pool, virtual threads, ...)
+    // results come back in the same order as the queries. for BFS/DFS all queries with the same
+    // source share one traversal from that source.
+    public List<Path> GraphSearchBatch(Collection<PathQuery> queries, Algorithm algo, Executor executor) {
+        return GraphSearchBatch(queries, algo, executor, SearchOptions.NONE);
+    }
 
-                else {
-                    Path currPath = graph.GraphSearch(src, dst, Algorithm.RANDOM_UNVISITED);
-                    i++;
-                    System.out.println("Attempt " + i + ": " + currPath.toString());
-                    if (currPath.doesPathReachDestination() == true) {
-                        numSuccesses++;
-                    }
+    // GraphSearchBatch with limits, each traversal gets its own budget (a shared one counts as one search).
+    // the observer / JFR see one trace per query like with GraphSearch: a traversal's work and time go to
+    // the first query it answers, the others it answered on the way report 0 like cache hits.
+    public List<Path> GraphSearchBatch(Collection<PathQuery> queries, Algorithm algo, Executor executor,
+                                       SearchOptions options) {
+        GraphSearchTemplate strategy = strategy(algo);
+        if (strategy == null) {
+            throw new IllegalArgumentException("Unknown algorithm: " + algo);
+        }
+        GraphSnapshot snapshot = freeze();   // build it once up front instead of racing for it in every task
+
+        PathQuery[] batch = queries.toArray(new PathQuery[0]);
+        Path[] results = new Path[batch.length];
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+
+        // queries the reachability index rules out are answered right here
+        List<Integer> pending = new ArrayList<>(batch.length);
+        for (int i = 0; i < batch.length; i++) {
+            Path deadEnd = reachabilityChecks ? unreachable(batch[i].src(), batch[i].dst()) : null;
+            if (deadEnd != null) {
+                results[i] = deadEnd;
+                SearchObserver observer = searchObserver;
+                SearchEvent event = new SearchEvent();
+                if (observer != null || event.isEnabled()) {
+                    report(observer, event, algo, batch[i].src(), batch[i].dst(), deadEnd, null, 0);
                 }
             }
+            else {
+                pending.add(i);
+            }
         }
-        else if (s == "backtrack") {
-            System.out.println("Backtrack Random Search:");
-
-            int i = 0;
-            int numSuccesses = 0;
-            while (i < 5) {
-                if (numSuccesses < 2) {
-                    // ensure that the first 2 go arounds always find the target node
-                    Path currPath = graph.GraphSearch(src, dst, Algorithm.RANDOM_BACKTRACK);
-                    if (currPath.doesPathReachDestination() == true) {
-                        i++;
-                        numSuccesses++;
-                        System.out.println("Attempt " + i + ": " + currPath.toString());
-                    }
-                }
 
-                else {
-                    Path currPath = graph.GraphSearch(src, dst, Algorithm.RANDOM_BACKTRACK);
-                    i++;
-                    System.out.println("Attempt " + i + ": " + currPath.toString());
-                    if (currPath.doesPathReachDestination() == true) {
-                        
-                        numSuccesses++;
-                    }
+        List<List<Integer>> groups = new ArrayList<>();
+        if (strategy.sharesTraversal()) {
+            // group query indices by source node so each source is only traversed once
+            Map<Integer, List<Integer>> bySource = new LinkedHashMap<>();
+            for (int i : pending) {
+                int u = snapshot.id(batch[i].src());
+                if (u < 0) {
+                    throw new IllegalArgumentException("Unknown node: " + batch[i].src());
                 }
+                bySource.computeIfAbsent(u, k -> new ArrayList<>()).add(i);
             }
+            groups.addAll(bySource.values());
         }
-        else if (s == "all") {
+        else {
+            // random walks can't share anything, every query is its own task
+            for (int i : pending) {
+                groups.add(List.of(i));
+            }
+        }
+        for (List<Integer> group : groups) {
+            tasks.add(CompletableFuture.runAsync(() -> answer(strategy, algo, batch, group, options, results), executor));
+        }
+
+        try {
+            CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return Arrays.asList(results);
+    }
+
+    // one task of a batch: answers the queries at indices (all from the same source) with one searchAll
+    private void answer(GraphSearchTemplate strategy, Algorithm algo, PathQuery[] batch, List<Integer> indices,
+                        SearchOptions options, Path[] results) {
+        String src = batch[indices.get(0)].src();
+        List<String> dsts = new ArrayList<>(indices.size());
+        for (int i : indices) {
+            dsts.add(batch[i].dst());
+        }
+
+        SearchObserver observer = searchObserver;
+        SearchEvent event = new SearchEvent();
+        if (observer == null && !event.isEnabled()) {
+            List<Path> paths = strategy.searchAll(this, src, dsts, options);
+            for (int k = 0; k < indices.size(); k++) {
+                results[indices.get(k)] = paths.get(k);
+            }
+            return;
+        }
+
+        event.begin();
+        SearchProbe probe = SearchProbe.start();
+        long t0 = System.nanoTime();
+        List<Path> paths;
+        try {
+            paths = strategy.searchAll(this, src, dsts, options);
+        } finally {
+            probe.stop();
+        }
+        long nanos = System.nanoTime() - t0;
+        event.end();
+
+        for (int k = 0; k < indices.size(); k++) {
+            PathQuery q = batch[indices.get(k)];
+            results[indices.get(k)] = paths.get(k);
+            report(observer, k == 0 ? event : new SearchEvent(), algo, q.src(), q.dst(), paths.get(k),
+                k == 0 ? probe : null, k == 0 ? nanos : 0);
+        }
+    }
+
+
+    // demo for main: prints 5 walks per mode, the first 2 of which should reach dst.
+    // gives up looking for those after MAX_WALK_ATTEMPTS misses, so an unreachable dst can't hang it
+    // (use RandomWalkEngine for anything more than a demo)
+    public void runRandomSearch(DotGraph graph, String s, String src, String dst) {
+        if (s.equals("full")) {
+            printRandomWalks(graph, "Fully Random Search:", Algorithm.RANDOM_FULL, src, dst);
+        }
+        else if (s.equals("unvisited")) {
+            printRandomWalks(graph, "Unvisited Random Search:", Algorithm.RANDOM_UNVISITED, src, dst);
+        }
+        else if (s.equals("backtrack")) {
+            printRandomWalks(graph, "Backtrack Random Search:", Algorithm.RANDOM_BACKTRACK, src, dst);
+        }
+        else if (s.equals("all")) {
             runRandomSearch(graph, "full", src, dst);
             System.out.println();
             runRandomSearch(graph, "unvisited", src, dst);
@@ -316,6 +907,32 @@ public class DotGraph {
         }
     }
 
+    private static final int MAX_WALK_ATTEMPTS = 1000;
+
+    private static void printRandomWalks(DotGraph graph, String title, Algorithm algo, String src, String dst) {
+        System.out.println(title);
+        int i = 0;
+        int numSuccesses = 0;
+        int misses = 0;
+        while (i < 5) {
+            Path currPath = graph.GraphSearch(src, dst, algo);
+            boolean reached = currPath.doesPathReachDestination();
+            // ensure that the first 2 go arounds always find the target node
+            if (numSuccesses < 2 && !reached) {
+                if (++misses == MAX_WALK_ATTEMPTS) {
+                    System.out.println("No walk reached " + dst + " in " + MAX_WALK_ATTEMPTS + " attempts");
+                    return;
+                }
+                continue;
+            }
+            i++;
+            if (reached) {
+                numSuccesses++;
+            }
+            System.out.println("Attempt " + i + ": " + currPath.toString());
+        }
+    }
+
     // main
     public static void main(String[] args) {
         try {
@@ -0,0 +1,287 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// recursive-descent parser for the DOT grammar on top of DotTokenizer
+// handles graph/digraph (strict or not, several per file), edge chains (a -> b -> c),
+// ;-separated statements, node/edge/graph attribute statements, ID = ID assignments, ports,
+// subgraphs (also as edge endpoints, {a b} -> c), and edge weights from [weight=...]
+// or from an edge [weight=...] default, scoped to its subgraph. nodes and edges are handed to
+// a Listener as they're parsed, nothing is kept around except the current statement.
+
+public final class DotParser {
+
+    // receives what the parser finds
+    public interface Listener {
+        void node(String id);
+
+        // weight is NaN when neither the edge nor an edge default set one.
+        // undirected edges (--) come through as one call per direction.
+        void edge(String from, String to, double weight);
+    }
+
+    private final DotTokenizer tokens;
+    private final Listener listener;
+    private int token;          // current lookahead
+    private boolean peeked;
+    private boolean closedByBrace;  // how the last parseStatements ended
+
+    public DotParser(DotTokenizer tokens, Listener listener) {
+        this.tokens = tokens;
+        this.listener = listener;
+    }
+
+    // parses every graph in the input
+    public void parse() throws IOException {
+        while (peek() != DotTokenizer.EOF) {
+            parseGraph();
+        }
+    }
+
+    // chunk mode, used by DotChunkLoader: the input is a run of whole top-level statements of a
+    // graph body (plus the header for the first chunk, the closing '}' for the last one).
+    // returns the top-level edge weight default the chunk leaves behind, NaN if it never set one.
+    // edges the chunk reports with a NaN weight inherit whatever default was in force before it.
+    // throws if the chunk doesn't line up with statement boundaries
+    double parseChunk(boolean first, boolean last) throws IOException {
+        if (first) {
+            parseHeader();
+        }
+        double edgeWeight = parseStatements(Double.NaN, null, true);
+        boolean closed = closedByBrace;
+        if (closed != last) {
+            throw tokens.error(closed ? "graph ends before the end of the chunk" : "missing '}'");
+        }
+        if (closed && peek() != DotTokenizer.EOF) {
+            throw tokens.error("more than one graph");
+        }
+        return edgeWeight;
+    }
+
+    private void parseGraph() throws IOException {
+        parseHeader();
+        parseStatements(Double.NaN, null, false);
+    }
+
+    // [strict] (graph | digraph) [ID] '{'
+    private void parseHeader() throws IOException {
+        expectId("graph header");
+        if (tokens.isKeyword("strict")) {
+            expectId("graph or digraph");
+        }
+        if (!tokens.isKeyword("graph") && !tokens.isKeyword("digraph")) {
+            throw tokens.error("expected graph or digraph but found '" + tokens.text() + "'");
+        }
+        if (peek() == DotTokenizer.ID) {
+            take();     // graph name, not used
+        }
+        expect(DotTokenizer.LBRACE, "'{'");
+    }
+
+    // statements up to (and including) the closing '}', or up to the end of input if stopAtEof.
+    // members collects every node mentioned, when this block is a subgraph used as an edge endpoint.
+    // returns the edge weight default in force at the end of the block
+    private double parseStatements(double edgeWeight, List<String> members, boolean stopAtEof) throws IOException {
+        while (true) {
+            int t = take();
+            switch (t) {
+                case DotTokenizer.RBRACE:
+                    closedByBrace = true;
+                    return edgeWeight;
+                case DotTokenizer.SEMI:
+                    continue;
+                case DotTokenizer.EOF:
+                    if (stopAtEof) {
+                        closedByBrace = false;
+                        return edgeWeight;
+                    }
+                    throw tokens.error("missing '}'");
+                case DotTokenizer.LBRACE:
+                    parseEdgeOrNode(parseSubgraphBody(edgeWeight, members), false, edgeWeight, members);
+                    continue;
+                case DotTokenizer.ID:
+                    break;
+                default:
+                    throw tokens.error("unexpected token at start of statement");
+            }
+
+            // grab everything about this ID before peeking replaces the tokenizer's text
+            String id = tokens.text();
+            boolean subgraph = tokens.isKeyword("subgraph");
+            boolean edgeDefaults = tokens.isKeyword("edge");
+            boolean attrStatement = edgeDefaults || tokens.isKeyword("graph") || tokens.isKeyword("node");
+
+            if (subgraph) {
+                if (peek() == DotTokenizer.ID) {
+                    take();     // subgraph name
+                }
+                expect(DotTokenizer.LBRACE, "'{'");
+                parseEdgeOrNode(parseSubgraphBody(edgeWeight, members), false, edgeWeight, members);
+                continue;
+            }
+            if (attrStatement && peek() == DotTokenizer.LBRACKET) {
+                double weight = parseAttributes();
+                if (edgeDefaults && !Double.isNaN(weight)) {
+                    edgeWeight = weight;     // only affects edges after this, in this block
+                }
+                continue;
+            }
+
+            if (peek() == DotTokenizer.EQUALS) {
+                take();
+                expectId("attribute value");    // graph attribute, nothing to keep
+                continue;
+            }
+            skipPort();
+            List<String> single = new ArrayList<>(1);
+            single.add(id);
+            parseEdgeOrNode(single, true, edgeWeight, members);
+        }
+    }
+
+    // body of a { ... } block, returns the nodes it mentioned
+    private List<String> parseSubgraphBody(double edgeWeight, List<String> outer) throws IOException {
+        List<String> inner = new ArrayList<>();
+        parseStatements(edgeWeight, inner, false);
+        if (outer != null) {
+            outer.addAll(inner);
+        }
+        return inner;
+    }
+
+    // first endpoint already parsed (a single node, or the nodes of a subgraph);
+    // either an edge chain follows or it was a node statement
+    private void parseEdgeOrNode(List<String> first, boolean firstIsNode, double edgeWeight, List<String> members)
+            throws IOException {
+        if (peek() != DotTokenizer.EDGE_OP) {
+            // node statement (or a bare subgraph, whose nodes were already reported)
+            if (firstIsNode) {
+                if (peek() == DotTokenizer.LBRACKET) {
+                    parseAttributes();
+                }
+                listener.node(first.get(0));
+                if (members != null) {
+                    members.add(first.get(0));
+                }
+            }
+            return;
+        }
+
+        List<List<String>> chain = new ArrayList<>();
+        List<Boolean> directed = new ArrayList<>();
+        chain.add(first);
+        if (firstIsNode && members != null) {
+            members.addAll(first);    // subgraph endpoints report their own members
+        }
+        while (peek() == DotTokenizer.EDGE_OP) {
+            take();
+            directed.add(tokens.isDirectedOp());
+            int t = take();
+            if (t == DotTokenizer.LBRACE) {
+                chain.add(parseSubgraphBody(edgeWeight, members));
+            }
+            else if (t == DotTokenizer.ID && tokens.isKeyword("subgraph")) {
+                if (peek() == DotTokenizer.ID) {
+                    take();
+                }
+                expect(DotTokenizer.LBRACE, "'{'");
+                chain.add(parseSubgraphBody(edgeWeight, members));
+            }
+            else if (t == DotTokenizer.ID) {
+                String id = tokens.text();
+                skipPort();
+                List<String> single = new ArrayList<>(1);
+                single.add(id);
+                chain.add(single);
+                if (members != null) {
+                    members.add(id);
+                }
+            }
+            else {
+                throw tokens.error("expected a node or subgraph after edge operator");
+            }
+        }
+
+        double weight = edgeWeight;
+        if (peek() == DotTokenizer.LBRACKET) {
+            double own = parseAttributes();
+            if (!Double.isNaN(own)) {
+                weight = own;
+            }
+        }
+
+        for (int i = 0; i + 1 < chain.size(); i++) {
+            for (String from : chain.get(i)) {
+                for (String to : chain.get(i + 1)) {
+                    listener.edge(from, to, weight);
+                    if (!directed.get(i)) {
+                        listener.edge(to, from, weight);
+                    }
+                }
+            }
+        }
+    }
+
+    // [a=b, c=d; e=f][...] - returns the weight attribute if there is one, NaN otherwise
+    private double parseAttributes() throws IOException {
+        double weight = Double.NaN;
+        while (peek() == DotTokenizer.LBRACKET) {
+            take();
+            while (true) {
+                int t = take();
+                if (t == DotTokenizer.RBRACKET) {
+                    break;
+                }
+                if (t == DotTokenizer.COMMA || t == DotTokenizer.SEMI) {
+                    continue;
+                }
+                if (t != DotTokenizer.ID) {
+                    throw tokens.error("expected attribute name");
+                }
+                boolean isWeight = !tokens.wasQuoted() && tokens.isKeyword("weight");
+                expect(DotTokenizer.EQUALS, "'='");
+                expectId("attribute value");
+                if (isWeight) {
+                    try {
+                        weight = Double.parseDouble(tokens.text());
+                    } catch (NumberFormatException e) {
+                        throw tokens.error("bad weight '" + tokens.text() + "'");
+                    }
+                }
+            }
+        }
+        return weight;
+    }
+
+    // node_id ports (a:port or a:port:compass) don't matter for the graph structure
+    private void skipPort() throws IOException {
+        while (peek() == DotTokenizer.COLON) {
+            take();
+            expectId("port");
+        }
+    }
+
+    private int peek() throws IOException {
+        if (!peeked) {
+            token = tokens.next();
+            peeked = true;
+        }
+        return token;
+    }
+
+    private int take() throws IOException {
+        int t = peek();
+        peeked = false;
+        return t;
+    }
+
+    private void expect(int kind, String what) throws IOException {
+        if (take() != kind) {
+            throw tokens.error("expected " + what);
+        }
+    }
+
+    private void expectId(String what) throws IOException {
+        expect(DotTokenizer.ID, what);
+    }
+}
@@ -0,0 +1,343 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// streaming lexer for the DOT language
+// works on bytes straight out of a fixed-size buffer that gets refilled from a channel (or on one
+// memory-mapped / in-memory buffer), so memory use stays flat no matter how big the input is.
+// knows about IDs (plain, numerals, "quoted" with + concatenation, <html>), edge operators,
+// punctuation and the three comment styles (// ..., /* ... */, and # lines).
+
+public final class DotTokenizer {
+    // token kinds
+    public static final int EOF = 0;
+    public static final int ID = 1;
+    public static final int EDGE_OP = 2;     // -> or --
+    public static final int LBRACE = 3;
+    public static final int RBRACE = 4;
+    public static final int LBRACKET = 5;
+    public static final int RBRACKET = 6;
+    public static final int SEMI = 7;
+    public static final int COMMA = 8;
+    public static final int EQUALS = 9;
+    public static final int COLON = 10;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final ReadableByteChannel channel;  // null when reading a single fixed buffer
+    private final ByteBuffer buffer;
+    private boolean channelDone;
+
+    private byte[] text = new byte[64];
+    private int textLength;
+    private boolean quoted;
+    private boolean directedOp;
+    private int line = 1;
+    private boolean lineStart = true;
+
+    // reads from a channel through its own buffer
+    public DotTokenizer(ReadableByteChannel channel) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        buffer.flip();      // start out empty
+    }
+
+    // reads the remaining bytes of a buffer (e.g. a memory-mapped slice of a file)
+    public DotTokenizer(ByteBuffer source) {
+        this.channel = null;
+        this.buffer = source;
+        this.channelDone = true;
+    }
+
+    // text of the last ID token
+    public String text() {
+        return new String(text, 0, textLength, StandardCharsets.UTF_8);
+    }
+
+    // whether the last ID was quoted (quoted IDs are never keywords)
+    public boolean wasQuoted() {
+        return quoted;
+    }
+
+    // for EDGE_OP: true for ->, false for --
+    public boolean isDirectedOp() {
+        return directedOp;
+    }
+
+    // line the last token ended on
+    public int line() {
+        return line;
+    }
+
+    // true if the last ID is the given keyword (case insensitive, like Graphviz)
+    public boolean isKeyword(String keyword) {
+        if (quoted || textLength != keyword.length()) {
+            return false;
+        }
+        for (int i = 0; i < textLength; i++) {
+            if (Character.toLowerCase((char) text[i]) != keyword.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int next() throws IOException {
+        while (true) {
+            int c = read();
+            switch (c) {
+                case -1:
+                    return EOF;
+                case '\n':
+                    line++;
+                    lineStart = true;
+                    continue;
+                case ' ': case '\t': case '\r': case '\f':
+                    continue;
+                case '#':
+                    if (lineStart) {     // preprocessor style line, ignored like Graphviz does
+                        skipLine();
+                        continue;
+                    }
+                    throw error("unexpected '#'");
+                case '/': {
+                    int d = peekByte();
+                    if (d == '/') {
+                        skipLine();
+                        continue;
+                    }
+                    if (d == '*') {
+                        read();
+                        skipBlockComment();
+                        continue;
+                    }
+                    throw error("unexpected '/'");
+                }
+                default:
+                    break;
+            }
+            lineStart = false;
+            switch (c) {
+                case '{': return LBRACE;
+                case '}': return RBRACE;
+                case '[': return LBRACKET;
+                case ']': return RBRACKET;
+                case ';': return SEMI;
+                case ',': return COMMA;
+                case '=': return EQUALS;
+                case ':': return COLON;
+                case '"':
+                    readQuoted();
+                    return ID;
+                case '<':
+                    readHtml();
+                    return ID;
+                case '-': {
+                    int d = peekByte();
+                    if (d == '>' || d == '-') {
+                        read();
+                        directedOp = d == '>';
+                        return EDGE_OP;
+                    }
+                    readNumeral(c);
+                    return ID;
+                }
+                default:
+                    if (c == '.' || (c >= '0' && c <= '9')) {
+                        readNumeral(c);
+                        return ID;
+                    }
+                    if (isIdStart(c)) {
+                        readName(c);
+                        return ID;
+                    }
+                    throw error("unexpected character '" + (char) c + "'");
+            }
+        }
+    }
+
+    private static boolean isIdStart(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c >= 0x80;
+    }
+
+    private void readName(int first) throws IOException {
+        startText(false);
+        append(first);
+        int c;
+        while ((c = peekByte()) != -1 && (isIdStart(c) || (c >= '0' && c <= '9'))) {
+            append(read());
+        }
+    }
+
+    private void readNumeral(int first) throws IOException {
+        startText(false);
+        append(first);
+        int c;
+        while ((c = peekByte()) != -1 && ((c >= '0' && c <= '9') || c == '.')) {
+            append(read());
+        }
+    }
+
+    // "..." with \" and \\ escapes and backslash-newline continuations, plus "a" + "b" concatenation.
+    // any other backslash is kept as it is (Graphviz label escapes like \n mean something to it later)
+    private void readQuoted() throws IOException {
+        startText(true);
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw error("unterminated string");
+            }
+            if (c == '"') {
+                if (!skipToConcatenation()) {
+                    return;
+                }
+                continue;
+            }
+            if (c == '\n') {
+                line++;
+            }
+            if (c == '\\') {
+                int d = read();
+                if (d == '"' || d == '\\') {
+                    append(d);
+                    continue;
+                }
+                if (d == '\n') {     // line continuation
+                    line++;
+                    continue;
+                }
+                if (d == '\r' && peekByte() == '\n') {
+                    read();
+                    line++;
+                    continue;
+                }
+                append('\\');
+                if (d == -1) {
+                    throw error("unterminated string");
+                }
+                append(d);
+                continue;
+            }
+            append(c);
+        }
+    }
+
+    // after a closing quote: if the next thing is + "..." keep reading into the same ID
+    private boolean skipToConcatenation() throws IOException {
+        // peeking past whitespace would need unbounded lookahead, but whitespace before a '+'
+        // can be consumed safely: nothing else in DOT cares about it
+        int c = peekByte();
+        while (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+            read();
+            if (c == '\n') {
+                line++;
+                lineStart = true;
+            }
+            c = peekByte();
+        }
+        if (c != '+') {
+            return false;
+        }
+        read();
+        c = read();
+        while (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+            if (c == '\n') line++;
+            c = read();
+        }
+        if (c != '"') {
+            throw error("expected a string after '+'");
+        }
+        lineStart = false;
+        return true;
+    }
+
+    // <...> with nested angle brackets, kept verbatim
+    private void readHtml() throws IOException {
+        startText(true);
+        int depth = 1;
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw error("unterminated HTML string");
+            }
+            if (c == '\n') line++;
+            if (c == '<') depth++;
+            if (c == '>' && --depth == 0) {
+                return;
+            }
+            append(c);
+        }
+    }
+
+    private void skipLine() throws IOException {
+        int c;
+        while ((c = peekByte()) != -1 && c != '\n') {
+            read();
+        }
+    }
+
+    private void skipBlockComment() throws IOException {
+        int prev = 0;
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw error("unterminated comment");
+            }
+            if (c == '\n') line++;
+            if (prev == '*' && c == '/') {
+                return;
+            }
+            prev = c;
+        }
+    }
+
+    private void startText(boolean isQuoted) {
+        textLength = 0;
+        quoted = isQuoted;
+    }
+
+    private void append(int b) {
+        if (textLength == text.length) {
+            text = Arrays.copyOf(text, textLength * 2);
+        }
+        text[textLength++] = (byte) b;
+    }
+
+    private int read() throws IOException {
+        if (!buffer.hasRemaining() && !fill()) {
+            return -1;
+        }
+        return buffer.get() & 0xFF;
+    }
+
+    private int peekByte() throws IOException {
+        if (!buffer.hasRemaining() && !fill()) {
+            return -1;
+        }
+        return buffer.get(buffer.position()) & 0xFF;
+    }
+
+    // refills the buffer from the channel, false at end of input
+    private boolean fill() throws IOException {
+        if (channelDone) {
+            return false;
+        }
+        buffer.clear();
+        int n;
+        do {
+            n = channel.read(buffer);
+        } while (n == 0);
+        buffer.flip();
+        if (n < 0) {
+            channelDone = true;
+            return false;
+        }
+        return true;
+    }
+
+    IOException error(String message) {
+        return new IOException("DOT syntax error on line " + line + ": " + message);
+    }
+}
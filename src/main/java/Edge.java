@@ -1,12 +1,19 @@
-import java.util.Objects;
-
 public class Edge {
+    // edges without an explicit weight cost 1, so weighted searches agree with hop counts
+    public static final double DEFAULT_WEIGHT = 1.0;
+
     private final String start;
     private final String end;
+    private double weight;
 
     public Edge(String start, String end) {
+        this(start, end, DEFAULT_WEIGHT);
+    }
+
+    public Edge(String start, String end, double weight) {
         this.start = start;
         this.end = end;
+        this.weight = weight;
     }
 
     public String getStart() {
@@ -17,9 +24,21 @@ public class Edge {
         return end;
     }
 
+    public double getWeight() {
+        return weight;
+    }
+
+    // weight isn't part of equals/hashCode, so updating it in place is safe inside hash sets
+    void setWeight(double weight) {
+        this.weight = weight;
+    }
+
     @Override
     public String toString() {
-        return start + " -> " + end;
+        if (weight == DEFAULT_WEIGHT) {
+            return start + " -> " + end;
+        }
+        return start + " -> " + end + " [weight=" + weight + "]";
     }
 
     @Override
@@ -32,6 +51,6 @@ public class Edge {
 
     @Override
     public int hashCode() {
-        return Objects.hash(start, end);
+        return 31 * start.hashCode() + end.hashCode();
     }
 }
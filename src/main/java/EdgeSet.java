@@ -0,0 +1,205 @@
+import java.util.Arrays;
+
+// insertion-ordered set of directed edges between symbol ids, packed as (src << 32 | dst) longs
+// edges live in an append-only log (plus a weight per entry, only allocated once some edge
+// isn't the default weight) and a primitive int hash table points into the log. removing an edge
+// leaves a hole in the log that gets squeezed out once there are too many.
+// every entry also remembers where the edge sits in its source's out-list and its target's
+// in-list, so DotGraph can unlink an edge from both adjacency lists in O(1).
+// works out to roughly 30-40 bytes per edge, vs. a few hundred for Edge objects in hash sets.
+
+final class EdgeSet {
+    private static final long REMOVED = -1L;
+
+    private long[] log = new long[16];
+    private double[] weights;           // null while every edge has the default weight
+    private int[] outPos = new int[16];
+    private int[] inPos = new int[16];
+    private int logSize;
+    private int size;
+
+    // open addressing, log index + 1 per slot (0 = empty), never more than half full
+    private int[] table = new int[32];
+
+    static long pack(int src, int dst) {
+        return ((long) src << 32) | (dst & 0xFFFFFFFFL);
+    }
+
+    static int src(long edge) {
+        return (int) (edge >>> 32);
+    }
+
+    static int dst(long edge) {
+        return (int) edge;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // log position of an edge, -1 if it isn't in the set
+    int indexOf(long edge) {
+        int mask = table.length - 1;
+        for (int slot = slot(edge, mask); ; slot = (slot + 1) & mask) {
+            int entry = table[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            if (log[entry - 1] == edge) {
+                return entry - 1;
+            }
+        }
+    }
+
+    boolean contains(long edge) {
+        return indexOf(edge) >= 0;
+    }
+
+    // log index of the new entry, -1 if the edge was already there (its weight is left alone then)
+    int add(long edge, double weight) {
+        if (indexOf(edge) >= 0) {
+            return -1;
+        }
+        if (logSize == log.length) {
+            if (logSize - size > logSize / 2) {
+                compact();      // mostly holes, reuse the space instead of growing
+            }
+            if (logSize == log.length) {
+                log = Arrays.copyOf(log, logSize * 2);
+                outPos = Arrays.copyOf(outPos, logSize * 2);
+                inPos = Arrays.copyOf(inPos, logSize * 2);
+                if (weights != null) {
+                    weights = Arrays.copyOf(weights, logSize * 2);
+                }
+            }
+        }
+        int at = logSize++;
+        log[at] = edge;
+        size++;
+        setWeight(at, weight);
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        else {
+            place(at);
+        }
+        return at;
+    }
+
+    boolean remove(long edge) {
+        int mask = table.length - 1;
+        int slot = slot(edge, mask);
+        while (true) {
+            int entry = table[slot];
+            if (entry == 0) {
+                return false;
+            }
+            if (log[entry - 1] == edge) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        log[table[slot] - 1] = REMOVED;
+        size--;
+
+        // backward-shift deletion keeps probe chains intact without tombstones
+        int hole = slot;
+        for (int next = (hole + 1) & mask; table[next] != 0; next = (next + 1) & mask) {
+            int home = slot(log[table[next] - 1], mask);
+            // move the entry back if the hole sits between its home slot and where it is now
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                table[hole] = table[next];
+                hole = next;
+            }
+        }
+        table[hole] = 0;
+        return true;
+    }
+
+    double weight(int index) {
+        return weights == null ? Edge.DEFAULT_WEIGHT : weights[index];
+    }
+
+    void setWeight(int index, double weight) {
+        if (weights == null) {
+            if (weight == Edge.DEFAULT_WEIGHT) {
+                return;
+            }
+            weights = new double[log.length];
+            Arrays.fill(weights, Edge.DEFAULT_WEIGHT);
+        }
+        weights[index] = weight;
+    }
+
+    // position of the edge in its source's out-list / its target's in-list
+    int outPos(int index) {
+        return outPos[index];
+    }
+
+    int inPos(int index) {
+        return inPos[index];
+    }
+
+    void setOutPos(int index, int pos) {
+        outPos[index] = pos;
+    }
+
+    void setInPos(int index, int pos) {
+        inPos[index] = pos;
+    }
+
+    // iterate with: for (int i = 0; i < logSize(); i++) if (isLive(i)) ... edgeAt(i) ...
+    // gives the edges in insertion order
+    int logSize() {
+        return logSize;
+    }
+
+    boolean isLive(int index) {
+        return log[index] != REMOVED;
+    }
+
+    long edgeAt(int index) {
+        return log[index];
+    }
+
+    // squeeze the holes out of the log, keeping the order
+    private void compact() {
+        int to = 0;
+        for (int from = 0; from < logSize; from++) {
+            if (log[from] != REMOVED) {
+                log[to] = log[from];
+                outPos[to] = outPos[from];
+                inPos[to] = inPos[from];
+                if (weights != null) {
+                    weights[to] = weights[from];
+                }
+                to++;
+            }
+        }
+        logSize = to;
+        rehash(table.length);
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        for (int i = 0; i < logSize; i++) {
+            if (log[i] != REMOVED) {
+                place(i);
+            }
+        }
+    }
+
+    private void place(int index) {
+        int mask = table.length - 1;
+        int slot = slot(log[index], mask);
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = index + 1;
+    }
+
+    private static int slot(long edge, int mask) {
+        long h = edge * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & mask;
+    }
+}
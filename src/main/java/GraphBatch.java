@@ -0,0 +1,71 @@
+import java.util.ArrayList;
+import java.util.List;
+
+// a set of changes to a DotGraph that get applied in one go
+//   GraphChanges changes = graph.batch().addEdge("a", "b").removeNode("c").apply();
+// ops run in the order they were added, with the same meaning as the single-op methods,
+// but the graph's version only moves once for the whole batch, so the snapshot and anything
+// keyed on the version get rebuilt once instead of after every change.
+// nothing touches the graph until apply(); a batch can be applied once.
+
+public final class GraphBatch {
+    enum Kind { ADD_NODE, REMOVE_NODE, ADD_EDGE, REMOVE_EDGE }
+
+    // weight is NaN for an edge added without one
+    record Op(Kind kind, String from, String to, double weight) {
+    }
+
+    private final DotGraph graph;
+    private final List<Op> ops = new ArrayList<>();
+    private boolean applied;
+
+    GraphBatch(DotGraph graph) {
+        this.graph = graph;
+    }
+
+    public GraphBatch addNode(String label) {
+        return add(new Op(Kind.ADD_NODE, label, null, Double.NaN));
+    }
+
+    // also removes every edge in or out of the node
+    public GraphBatch removeNode(String label) {
+        return add(new Op(Kind.REMOVE_NODE, label, null, Double.NaN));
+    }
+
+    public GraphBatch addEdge(String startLabel, String endLabel) {
+        return add(new Op(Kind.ADD_EDGE, startLabel, endLabel, Double.NaN));
+    }
+
+    public GraphBatch addEdge(String startLabel, String endLabel, double weight) {
+        DotGraph.checkWeight(weight);
+        return add(new Op(Kind.ADD_EDGE, startLabel, endLabel, weight));
+    }
+
+    public GraphBatch removeEdge(String startLabel, String endLabel) {
+        return add(new Op(Kind.REMOVE_EDGE, startLabel, endLabel, Double.NaN));
+    }
+
+    // number of queued ops
+    public int size() {
+        return ops.size();
+    }
+
+    public GraphChanges apply() {
+        if (applied) {
+            throw new IllegalStateException("Batch was already applied");
+        }
+        applied = true;
+        return graph.apply(ops);
+    }
+
+    private GraphBatch add(Op op) {
+        if (applied) {
+            throw new IllegalStateException("Batch was already applied");
+        }
+        if (op.from() == null || ((op.kind() == Kind.ADD_EDGE || op.kind() == Kind.REMOVE_EDGE) && op.to() == null)) {
+            throw new IllegalArgumentException("Node label must not be null");
+        }
+        ops.add(op);
+        return this;
+    }
+}
@@ -0,0 +1,100 @@
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+// what applying a GraphBatch actually did to the graph
+// ops that changed nothing (adding a node that's there, removing an edge that isn't) don't show
+// up. node labels are canonical (upper-cased), like getNodes(). a node that's added and removed
+// again in the same batch shows up in both sets.
+
+public final class GraphChanges {
+    private final long fromVersion;
+    private long toVersion;
+    private final Set<String> addedNodes = new LinkedHashSet<>();
+    private final Set<String> removedNodes = new LinkedHashSet<>();
+    private final Set<String> touchedNodes = new LinkedHashSet<>();
+    private int edgesAdded;
+    private int edgesRemoved;
+    private int edgesReweighted;
+
+    GraphChanges(long fromVersion) {
+        this.fromVersion = fromVersion;
+        this.toVersion = fromVersion;
+    }
+
+    void nodeAdded(String key) {
+        addedNodes.add(key);
+        touchedNodes.add(key);
+    }
+
+    void nodeRemoved(String key) {
+        removedNodes.add(key);
+        touchedNodes.add(key);
+    }
+
+    void edgeAdded(String from, String to) {
+        edgesAdded++;
+        touchedNodes.add(from);
+        touchedNodes.add(to);
+    }
+
+    void edgeRemoved(String from, String to) {
+        edgesRemoved++;
+        touchedNodes.add(from);
+        touchedNodes.add(to);
+    }
+
+    void edgeReweighted(String from, String to) {
+        edgesReweighted++;
+        touchedNodes.add(from);
+        touchedNodes.add(to);
+    }
+
+    void finish(long version) {
+        toVersion = version;
+    }
+
+    public boolean isEmpty() {
+        return fromVersion == toVersion;
+    }
+
+    // graph version before / after the batch
+    public long getFromVersion() {
+        return fromVersion;
+    }
+
+    public long getToVersion() {
+        return toVersion;
+    }
+
+    public Set<String> getAddedNodes() {
+        return Collections.unmodifiableSet(addedNodes);
+    }
+
+    public Set<String> getRemovedNodes() {
+        return Collections.unmodifiableSet(removedNodes);
+    }
+
+    // every node that was added, removed, or had an edge added / removed / reweighted
+    public Set<String> getTouchedNodes() {
+        return Collections.unmodifiableSet(touchedNodes);
+    }
+
+    public int getEdgesAdded() {
+        return edgesAdded;
+    }
+
+    public int getEdgesRemoved() {
+        return edgesRemoved;
+    }
+
+    public int getEdgesReweighted() {
+        return edgesReweighted;
+    }
+
+    @Override
+    public String toString() {
+        return "+" + addedNodes.size() + "/-" + removedNodes.size() + " nodes, +" + edgesAdded + "/-" + edgesRemoved
+            + "/~" + edgesReweighted + " edges (version " + fromVersion + " -> " + toVersion + ")";
+    }
+}
@@ -0,0 +1,175 @@
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.zip.GZIPOutputStream;
+
+// streaming writers behind DotGraph.export / outputDOTGraph / outputGraphToText / toString
+// everything goes out one node / edge at a time through a big buffer, nothing builds the
+// whole rendering in memory, so exporting a huge graph takes constant heap.
+
+final class GraphExporter {
+    static final int BUFFER_SIZE = 1 << 16;
+
+    private GraphExporter() {
+    }
+
+    static void write(DotGraph.ExportFormat format, Collection<String> nodes, Collection<Edge> edges, Writer out)
+            throws IOException {
+        if (format == DotGraph.ExportFormat.DOT) {
+            writeDOT(nodes, edges, out);
+        }
+        else {
+            writeText(nodes, edges, out);
+        }
+    }
+
+    // UTF-8 (optionally gzipped) onto a stream the caller owns: it gets flushed, not closed
+    static void write(DotGraph.ExportFormat format, Collection<String> nodes, Collection<Edge> edges,
+                      OutputStream out, boolean gzip) throws IOException {
+        GZIPOutputStream zip = gzip ? new GZIPOutputStream(new Unclosable(out), BUFFER_SIZE) : null;
+        Writer writer = new BufferedWriter(
+            new OutputStreamWriter(zip != null ? zip : new Unclosable(out), StandardCharsets.UTF_8), BUFFER_SIZE);
+        write(format, nodes, edges, writer);
+        // closing finishes the gzip trailer; Unclosable keeps the caller's stream open
+        writer.close();
+        out.flush();
+    }
+
+    private static void writeDOT(Collection<String> nodes, Collection<Edge> edges, Writer out) throws IOException {
+        out.write("digraph {\n");
+        for (String node : nodes) {
+            out.write("    ");
+            writeId(node, out);
+            out.write(";\n");
+        }
+        for (Edge e : edges) {
+            out.write("    ");
+            writeId(e.getStart(), out);
+            out.write(" -> ");
+            writeId(e.getEnd(), out);
+            if (e.getWeight() != Edge.DEFAULT_WEIGHT) {
+                out.write(" [weight=");
+                // DOT numerals have no exponent, so 1.0E7 has to go out as 10000000
+                out.write(BigDecimal.valueOf(e.getWeight()).toPlainString());
+                out.write(']');
+            }
+            out.write(";\n");
+        }
+        out.write("}");
+        out.flush();
+    }
+
+    // same text toString() has always produced, lower-cased piece by piece
+    private static void writeText(Collection<String> nodes, Collection<Edge> edges, Writer out) throws IOException {
+        out.write("Nodes (");
+        out.write(Integer.toString(nodes.size()));
+        out.write("): [");
+        boolean first = true;
+        for (String node : nodes) {
+            if (!first) {
+                out.write(", ");
+            }
+            first = false;
+            out.write(node.toLowerCase());
+        }
+        out.write("]\nEdges (");
+        out.write(Integer.toString(edges.size()));
+        out.write("):\n");
+        for (Edge e : edges) {
+            out.write("  ");
+            out.write(e.toString().toLowerCase());
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    // writes a DOT ID, quoted unless it's a plain name or numeral that isn't a keyword.
+    // inside the quotes " and \ get a backslash (DotTokenizer reads both back), line breaks go in
+    // as they are since DOT strings can span lines; a backslash in front of one would join the lines
+    static void writeId(String id, Writer out) throws IOException {
+        if (isPlainId(id)) {
+            out.write(id);
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+            }
+            out.write(c);
+        }
+        out.write('"');
+    }
+
+    private static boolean isPlainId(String id) {
+        if (id.isEmpty()) {
+            return false;
+        }
+        char c0 = id.charAt(0);
+        if (c0 == '-' || c0 == '.' || (c0 >= '0' && c0 <= '9')) {
+            return isNumeral(id);
+        }
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            boolean ok = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c >= 0x80
+                || (i > 0 && c >= '0' && c <= '9');
+            if (!ok) {
+                return false;
+            }
+        }
+        return !isKeyword(id);
+    }
+
+    // -?(.[0-9]+ | [0-9]+(.[0-9]*)?)
+    private static boolean isNumeral(String id) {
+        int i = id.charAt(0) == '-' ? 1 : 0;
+        int digits = 0;
+        boolean dot = false;
+        for (; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c == '.' && !dot) {
+                dot = true;
+            }
+            else if (c >= '0' && c <= '9') {
+                digits++;
+            }
+            else {
+                return false;
+            }
+        }
+        return digits > 0;
+    }
+
+    private static boolean isKeyword(String id) {
+        switch (id.toLowerCase()) {
+            case "node": case "edge": case "graph": case "digraph": case "subgraph": case "strict":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // lets us close the writer chain (and finish gzip) without closing the caller's stream
+    private static final class Unclosable extends FilterOutputStream {
+        Unclosable(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,328 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.zip.GZIPOutputStream;
+
+// seeded synthetic graphs for load testing
+// edges are generated on the fly and handed straight to a sink (a DotGraph, a DOT file, a snapshot
+// file or your own EdgeSink), nothing is collected first, so the size is only limited by the target.
+// the same settings always give the same graph, edge for edge. nodes are labeled n0 .. n(nodes-1),
+// edges come grouped by source in increasing order, no self loops, no duplicates.
+//   ERDOS_RENYI  every ordered pair is an edge with the same probability, about `edges` in total
+//                (Batagelj & Brandes' geometric skipping, O(nodes + edges))
+//   POWER_LAW    every node gets edges/nodes out-edges (give or take one), targets drawn with
+//                probability ~ (rank + 1)^-1/(exponent - 1). that's the degree distribution
+//                preferential attachment ends up with (low ids are the hubs, like the oldest
+//                nodes in Barabasi-Albert), without remembering the edges to attach to
+//   GRID         rows x cols lattice, every cell linked both ways to its 4 neighbors
+//   CHAIN        n0 -> n1 -> ... -> n(nodes-1), as deep as a graph gets
+// command line:
+//   java -cp target/classes GraphGenerator <model> <nodes> <edges> <seed> <out.dot | out.dot.gz | out.snap>
+// (edges is ignored by GRID and CHAIN, GRID makes the squarest lattice with that many nodes)
+
+public final class GraphGenerator {
+    public enum Model { ERDOS_RENYI, POWER_LAW, GRID, CHAIN }
+
+    public interface EdgeSink {
+        void edge(int from, int to, double weight) throws IOException;
+    }
+
+    private static final double DEFAULT_EXPONENT = 2.5;
+
+    private final Model model;
+    private final int nodes;
+    private final long edges;
+    private final long seed;
+    private final int cols;             // GRID only
+    private final double exponent;      // POWER_LAW only
+    private final int maxWeight;        // 0 = unweighted
+
+    private GraphGenerator(Model model, int nodes, long edges, long seed, int cols, double exponent, int maxWeight) {
+        if (nodes < 1 || edges < 0) {
+            throw new IllegalArgumentException("Bad graph size: " + nodes + " nodes, " + edges + " edges");
+        }
+        this.model = model;
+        this.nodes = nodes;
+        this.edges = edges;
+        this.seed = seed;
+        this.cols = cols;
+        this.exponent = exponent;
+        this.maxWeight = maxWeight;
+    }
+
+    public static GraphGenerator erdosRenyi(int nodes, long edges, long seed) {
+        if (nodes > 1 && edges > (long) nodes * (nodes - 1)) {
+            throw new IllegalArgumentException("More edges than ordered pairs: " + edges);
+        }
+        return new GraphGenerator(Model.ERDOS_RENYI, nodes, edges, seed, 0, 0, 0);
+    }
+
+    public static GraphGenerator powerLaw(int nodes, long edges, long seed) {
+        return powerLaw(nodes, edges, DEFAULT_EXPONENT, seed);
+    }
+
+    // exponent of the in-degree distribution, > 2 (2.1 - 3 is what real networks tend to have)
+    public static GraphGenerator powerLaw(int nodes, long edges, double exponent, long seed) {
+        if (!(exponent > 2) || edges > (long) nodes * (nodes - 1)) {
+            throw new IllegalArgumentException("Bad power law settings: exponent " + exponent + ", " + edges + " edges");
+        }
+        return new GraphGenerator(Model.POWER_LAW, nodes, edges, seed, 0, exponent, 0);
+    }
+
+    public static GraphGenerator grid(int rows, int cols) {
+        if (rows < 1 || cols < 1 || (long) rows * cols > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Bad grid size: " + rows + " x " + cols);
+        }
+        long edges = 2L * (rows - 1) * cols + 2L * rows * (cols - 1);
+        return new GraphGenerator(Model.GRID, rows * cols, edges, 0, cols, 0, 0);
+    }
+
+    public static GraphGenerator chain(int nodes) {
+        return new GraphGenerator(Model.CHAIN, nodes, nodes - 1L, 0, 0, 0, 0);
+    }
+
+    // same graph, with a random integer weight in [1, maxWeight] on every edge
+    // (drawn from its own generator, so the edges don't change)
+    public GraphGenerator withWeights(int maxWeight) {
+        if (maxWeight < 1) {
+            throw new IllegalArgumentException("Max weight must be positive: " + maxWeight);
+        }
+        return new GraphGenerator(model, nodes, edges, seed, cols, exponent, maxWeight);
+    }
+
+    public int nodeCount() {
+        return nodes;
+    }
+
+    public boolean isWeighted() {
+        return maxWeight > 0;
+    }
+
+    public static String label(int v) {
+        return "n" + v;
+    }
+
+    // feeds every edge to the sink, in order
+    public void generate(EdgeSink sink) throws IOException {
+        SplittableRandom weights = new SplittableRandom(seed ^ 0x5DEECE66DL);
+        EdgeSink out = maxWeight == 0 ? sink
+            : (u, v, w) -> sink.edge(u, v, 1 + weights.nextInt(maxWeight));
+        switch (model) {
+            case ERDOS_RENYI:
+                erdosRenyi(out);
+                break;
+            case POWER_LAW:
+                powerLaw(out);
+                break;
+            case GRID:
+                grid(out);
+                break;
+            case CHAIN:
+                for (int v = 0; v + 1 < nodes; v++) {
+                    out.edge(v, v + 1, Edge.DEFAULT_WEIGHT);
+                }
+                break;
+        }
+    }
+
+    // builds the graph in memory (every node is added, isolated ones too)
+    public DotGraph toGraph() {
+        DotGraph graph = new DotGraph();
+        for (int v = 0; v < nodes; v++) {
+            graph.addNode(label(v));
+        }
+        try {
+            generate((u, v, w) -> {
+                if (maxWeight == 0) {
+                    graph.addEdge(label(u), label(v));
+                }
+                else {
+                    graph.addEdge(label(u), label(v), w);
+                }
+            });
+        } catch (IOException e) {
+            throw new IllegalStateException("in-memory generation can't fail", e);
+        }
+        return graph;
+    }
+
+    // streams the graph out as DOT, gzipped if the path ends in .gz
+    public void writeDOT(String filepath) throws IOException {
+        try (OutputStream file = Files.newOutputStream(Paths.get(filepath));
+             OutputStream raw = filepath.endsWith(".gz") ? new GZIPOutputStream(file, GraphExporter.BUFFER_SIZE) : file;
+             Writer out = new BufferedWriter(new OutputStreamWriter(raw, StandardCharsets.UTF_8), GraphExporter.BUFFER_SIZE)) {
+            out.write("digraph {\n");
+            for (int v = 0; v < nodes; v++) {
+                out.write("    n");
+                out.write(Integer.toString(v));
+                out.write(";\n");
+            }
+            generate((u, v, w) -> {
+                out.write("    n");
+                out.write(Integer.toString(u));
+                out.write(" -> n");
+                out.write(Integer.toString(v));
+                if (maxWeight != 0) {
+                    out.write(" [weight=");
+                    out.write(Integer.toString((int) w));
+                    out.write(']');
+                }
+                out.write(";\n");
+            });
+            out.write("}\n");
+        }
+    }
+
+    // streams the graph into a snapshot file for DotGraph.loadSnapshot (runs the generator twice)
+    public void writeSnapshot(String filepath) throws IOException {
+        SnapshotFile.write(new SnapshotFile.Source() {
+            @Override
+            public int size() {
+                return nodes;
+            }
+
+            @Override
+            public String label(int v) {
+                return "N" + v;
+            }
+
+            @Override
+            public boolean isWeighted() {
+                return maxWeight > 0;
+            }
+
+            @Override
+            public void edges(SnapshotFile.EdgeVisitor visitor) throws IOException {
+                generate(visitor::edge);
+            }
+        }, Paths.get(filepath));
+    }
+
+    // G(n, p) over the n(n-1) ordered pairs without self loops, jumping straight to the next edge
+    private void erdosRenyi(EdgeSink out) throws IOException {
+        long pairs = (long) nodes * (nodes - 1);
+        if (pairs == 0 || edges == 0) {
+            return;
+        }
+        double p = (double) edges / pairs;
+        SplittableRandom rnd = new SplittableRandom(seed);
+        double logq = Math.log1p(-p);
+        long at = -1;
+        while (true) {
+            if (p >= 1) {
+                at++;
+            }
+            else {
+                double skip = Math.floor(Math.log1p(-rnd.nextDouble()) / logq);
+                if (skip >= pairs - at) {
+                    return;
+                }
+                at += 1 + (long) skip;
+            }
+            if (at >= pairs) {
+                return;
+            }
+            int u = (int) (at / (nodes - 1));
+            int t = (int) (at % (nodes - 1));
+            out.edge(u, t >= u ? t + 1 : t, Edge.DEFAULT_WEIGHT);
+        }
+    }
+
+    private void powerLaw(EdgeSink out) throws IOException {
+        SplittableRandom rnd = new SplittableRandom(seed);
+        // inverse CDF of x^-a on [1, nodes + 1], a = 1 / (exponent - 1)
+        double a = 1 / (exponent - 1);
+        double top = Math.pow(nodes + 1, 1 - a) - 1;
+        long base = edges / nodes;
+        long extra = edges % nodes;      // the first `extra` nodes get one more edge
+        int[] picked = new int[(int) Math.min(nodes, base + 1)];
+        for (int u = 0; u < nodes; u++) {
+            int k = (int) Math.min(nodes - 1, base + (u < extra ? 1 : 0));
+            int count = 0;
+            while (count < k) {
+                int v;
+                if (k * 2 >= nodes) {
+                    v = rnd.nextInt(nodes);         // too dense for the skewed draw to ever finish
+                }
+                else {
+                    double x = Math.pow(1 + rnd.nextDouble() * top, 1 / (1 - a));
+                    v = Math.min(nodes - 1, (int) x - 1);
+                }
+                if (v != u && !contains(picked, count, v)) {
+                    picked[count++] = v;
+                }
+            }
+            Arrays.sort(picked, 0, count);
+            for (int i = 0; i < count; i++) {
+                out.edge(u, picked[i], Edge.DEFAULT_WEIGHT);
+            }
+        }
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) return true;
+        }
+        return false;
+    }
+
+    private void grid(EdgeSink out) throws IOException {
+        int rows = nodes / cols;
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                int v = r * cols + c;
+                if (r > 0) out.edge(v, v - cols, Edge.DEFAULT_WEIGHT);
+                if (c > 0) out.edge(v, v - 1, Edge.DEFAULT_WEIGHT);
+                if (c + 1 < cols) out.edge(v, v + 1, Edge.DEFAULT_WEIGHT);
+                if (r + 1 < rows) out.edge(v, v + cols, Edge.DEFAULT_WEIGHT);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 5) {
+            System.err.println("usage: GraphGenerator <erdos_renyi|power_law|grid|chain> <nodes> <edges> <seed> "
+                + "<out.dot | out.dot.gz | out.snap>");
+            System.exit(2);
+        }
+        Model model = Model.valueOf(args[0].toUpperCase());
+        int nodes = Integer.parseInt(args[1]);
+        long edges = Long.parseLong(args[2]);
+        long seed = Long.parseLong(args[3]);
+        String out = args[4];
+
+        GraphGenerator generator;
+        switch (model) {
+            case ERDOS_RENYI:
+                generator = erdosRenyi(nodes, edges, seed);
+                break;
+            case POWER_LAW:
+                generator = powerLaw(nodes, edges, seed);
+                break;
+            case GRID: {
+                int side = (int) Math.ceil(Math.sqrt(nodes));
+                generator = grid((nodes + side - 1) / side, side);
+                break;
+            }
+            default:
+                generator = chain(nodes);
+                break;
+        }
+
+        long t0 = System.nanoTime();
+        if (out.endsWith(".snap")) {
+            generator.writeSnapshot(out);
+        }
+        else {
+            generator.writeDOT(out);
+        }
+        System.out.printf("wrote %s in %d ms%n", out, (System.nanoTime() - t0) / 1_000_000);
+    }
+}
@@ -0,0 +1,187 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+// renders graphs to images with Graphviz
+// DOT is streamed straight into the process's stdin (no temp file), stdout and stderr are drained
+// at the same time so a chatty process can't block on a full pipe, a semaphore caps how many
+// renders run at once, and finished images are cached by a hash of the graph's DOT + format,
+// so rendering an unchanged graph again doesn't start a process at all. the hash itself is kept
+// per graph until its version moves on, so that repeat doesn't even export the graph.
+
+public class GraphRenderer {
+    // stream draining just sits in blocking reads, virtual threads are made for that
+    private static final ExecutorService DRAINERS = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final List<String> command;
+    private final Semaphore permits;
+    private final int cacheSize;
+    private final Map<String, byte[]> cache;
+    private final Map<DotGraph, Hashed> hashes = new WeakHashMap<>();   // last content hash of each graph
+    private long hits;
+    private long misses;
+
+    // "dot" from the PATH, one render per core, 64 cached images
+    public GraphRenderer() {
+        this(List.of("dot"), Runtime.getRuntime().availableProcessors(), 64);
+    }
+
+    // command is the renderer and any fixed arguments, "-T<format>" gets appended to it
+    public GraphRenderer(List<String> command, int maxConcurrent, int cacheSize) {
+        if (command.isEmpty() || maxConcurrent < 1 || cacheSize < 0) {
+            throw new IllegalArgumentException("Bad renderer settings: " + command + ", " + maxConcurrent + ", " + cacheSize);
+        }
+        this.command = List.copyOf(command);
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.cacheSize = cacheSize;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true);   // access order, for LRU eviction
+    }
+
+    private record Hashed(long version, String hash) {
+    }
+
+    // rendered image bytes in the given Graphviz output format (png, svg, ...), the caller's own copy
+    public byte[] render(DotGraph graph, String format) throws IOException, InterruptedException {
+        String key = format + ":" + hash(graph);
+        synchronized (cache) {
+            byte[] cached = cache.get(key);
+            if (cached != null) {
+                hits++;
+                return cached.clone();
+            }
+            misses++;
+        }
+
+        byte[] image;
+        permits.acquire();
+        try {
+            image = run(graph, format);
+        } finally {
+            permits.release();
+        }
+
+        synchronized (cache) {
+            if (cacheSize > 0) {
+                cache.put(key, image.clone());
+                if (cache.size() > cacheSize) {
+                    cache.remove(cache.keySet().iterator().next());
+                }
+            }
+        }
+        return image;
+    }
+
+    // renders that were answered from the cache / had to run the process
+    public long getCacheHits() {
+        synchronized (cache) {
+            return hits;
+        }
+    }
+
+    public long getCacheMisses() {
+        synchronized (cache) {
+            return misses;
+        }
+    }
+
+    private byte[] run(DotGraph graph, String format) throws IOException, InterruptedException {
+        List<String> cmd = new ArrayList<>(command);
+        cmd.add("-T" + format);
+        Process process = new ProcessBuilder(cmd).start();
+        try {
+            CompletableFuture<byte[]> stdout = drain(process.getInputStream());
+            CompletableFuture<byte[]> stderr = drain(process.getErrorStream());
+
+            IOException writeFailure = null;
+            try (OutputStream stdin = process.getOutputStream()) {
+                graph.export(DotGraph.ExportFormat.DOT, stdin, false);
+            } catch (IOException e) {
+                // usually a broken pipe because the renderer died, its exit code / stderr say why
+                writeFailure = e;
+            }
+
+            int exitCode = process.waitFor();
+            byte[] image = join(stdout);
+            String errors = new String(join(stderr), StandardCharsets.UTF_8).trim();
+            if (exitCode != 0) {
+                throw new IOException("Graphviz process failed (exit " + exitCode + "): " + errors);
+            }
+            if (writeFailure != null) {
+                throw writeFailure;
+            }
+            return image;
+        } finally {
+            // only still running if we got interrupted or something threw, don't leave it behind
+            if (process.isAlive()) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private static CompletableFuture<byte[]> drain(InputStream in) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (InputStream stream = in) {
+                return stream.readAllBytes();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, DRAINERS);
+    }
+
+    private static byte[] join(CompletableFuture<byte[]> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    // contentHash, only recomputed once the graph's version has moved on. a changed graph can still
+    // end up with the same content (edge removed and added back), the hash then finds its old image
+    private String hash(DotGraph graph) throws IOException {
+        long version = graph.getVersion();
+        synchronized (hashes) {
+            Hashed h = hashes.get(graph);
+            if (h != null && h.version() == version) {
+                return h.hash();
+            }
+        }
+        String hash = contentHash(graph);
+        synchronized (hashes) {
+            hashes.put(graph, new Hashed(version, hash));
+        }
+        return hash;
+    }
+
+    // SHA-256 of the graph's DOT rendering, streamed so the text is never held in memory
+    static String contentHash(DotGraph graph) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is always available", e);
+        }
+        try (OutputStream out = new DigestOutputStream(OutputStream.nullOutputStream(), digest)) {
+            graph.export(DotGraph.ExportFormat.DOT, out, false);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
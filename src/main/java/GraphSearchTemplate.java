@@ -1,100 +1,210 @@
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Deque;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 // template for graph search algorithms
+// the search itself runs over the graph's frozen CSR snapshot using int node ids,
+// a visited bitset, an int parent array and an int ring-buffer frontier (see SearchState).
+// the state is reused across calls, and a Path is only built once we know where we ended up.
+// strategies keep no per-search fields: states come from a per-thread pool, so one instance
+// can serve any number of concurrent searches (and a search started from inside onVisit).
 
 public abstract class GraphSearchTemplate {
-    protected DotGraph graph;
-    protected Map<String, PathNode> nodeMap;
-    protected Deque<PathNode> frontier;
+    // per-thread pool of idle states (a search can hold more than one, and can nest via onVisit)
+    private final ThreadLocal<ArrayDeque<SearchState>> states = ThreadLocal.withInitial(ArrayDeque::new);
 
     // template method, defines the skeleton of the graph search
     
     public Path search(DotGraph graph, String src, String dst) {
+        return search(graph, src, dst, SearchOptions.NONE);
+    }
 
-        // handling lowercase inputs Just In Case lol
-        src = src.toUpperCase();
-        dst = dst.toUpperCase();
+    // search() within the given limits, a search that runs into one returns a partial path
+    public Path search(DotGraph graph, String src, String dst, SearchOptions options) {
+        SearchBudget budget = options.start();
+        GraphSnapshot snapshot = graph.freeze();
+        int start = startNode(snapshot, src);
+        Path[] found = new Path[1];
+        traverse(snapshot, start, new int[]{snapshot.id(dst)}, found, budget);
+        return found[0];
+    }
 
-        this.graph = graph;
-        nodeMap = initNodeMap();
-        frontier = initFrontier();
+    // answers several destinations from the same source. strategies that share traversals
+    // do it in a single pass, and each path is exactly what search() would return for that dst.
+    public List<Path> searchAll(DotGraph graph, String src, List<String> dsts) {
+        return searchAll(graph, src, dsts, SearchOptions.NONE);
+    }
 
-        PathNode start = nodeMap.get(src);
-        start.setExplored(true);
-        frontierAdd(start);
-        PathNode current = start;
+    // searchAll() within the given limits. a shared traversal is one search as far as the budget goes
+    public List<Path> searchAll(DotGraph graph, String src, List<String> dsts, SearchOptions options) {
+        if (!sharesTraversal()) {
+            List<Path> paths = new ArrayList<>(dsts.size());
+            for (String dst : dsts) {
+                paths.add(search(graph, src, dst, options));
+            }
+            return paths;
+        }
+        SearchBudget budget = options.start();
+        GraphSnapshot snapshot = graph.freeze();
+        int start = startNode(snapshot, src);
+        int[] targets = new int[dsts.size()];
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = snapshot.id(dsts.get(i));     // -1 if dst isn't in the graph, we just never find it
+        }
+        Path[] found = new Path[targets.length];
+        traverse(snapshot, start, targets, found, budget);
+        return Arrays.asList(found);
+    }
 
-        while (!frontier.isEmpty()) {
-            current = frontierRemove();
+    // sorted, de-duplicated ids of the targets that exist in the graph
+    private static int[] distinctTargets(int[] targets) {
+        int[] wanted = new int[targets.length];
+        int n = 0;
+        for (int t : targets) {
+            if (t >= 0) wanted[n++] = t;
+        }
+        Arrays.sort(wanted, 0, n);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (distinct == 0 || wanted[distinct - 1] != wanted[i]) {
+                wanted[distinct++] = wanted[i];
+            }
+        }
+        return distinct == wanted.length ? wanted : Arrays.copyOf(wanted, distinct);
+    }
 
-            // for printing for demo
-            Path prefix = buildPath(current);
-            onVisit(prefix.getPathArray());
+    private static boolean allKnown(int[] targets) {
+        for (int t : targets) {
+            if (t < 0) return false;
+        }
+        return targets.length > 0;
+    }
 
-            if (current.getName().equals(dst)) {
-                Path p = buildPath(current);
-                p.setDestinationReached();
-                return p;
-            }
+    protected static int startNode(GraphSnapshot snapshot, String src) {
+        int start = snapshot.id(src);
+        if (start < 0) {
+            throw new IllegalArgumentException("Unknown node: " + src);
+        }
+        return start;
+    }
 
-            // collect visited names for planNext
-            List<String> visited = new ArrayList<>();
-            for (PathNode pn : frontier) visited.add(pn.getName());
-            visited.add(current.getName());
-
-            for (String neighbor : planNext(current.getName(), visited)) {
-                PathNode adj = nodeMap.get(neighbor.toUpperCase());
-                if (adj != null) {
-                    if (!adj.isExplored()) {
-                        adj.setExplored(true);
-                        adj.setParent(current.getName());
-                        frontierAdd(adj);
+    // the search loop itself: expands from start until every target was reached or the frontier runs dry.
+    // found[i] gets the path for targets[i]; targets nobody reaches get the dead-end path to the last expanded node,
+    // which is a partial path if the budget ran out first.
+    private void traverse(GraphSnapshot snapshot, int start, int[] targets, Path[] found, SearchBudget budget) {
+        int[] wanted = distinctTargets(targets);
+        Path[] reached = new Path[wanted.length];
+        int remaining = wanted.length;
+        // a missing dst has to see the whole traversal, so no stopping early then
+        boolean stopEarly = allKnown(targets);
+
+        SearchState state = acquireState();
+        state.prepare(snapshot.size());
+        IntList next = state.planned();
+        try {
+            state.visit(start, -1);
+            frontierAdd(state, start);
+            int current = start;
+            SearchOptions.StopReason stopped = null;
+
+            while (!state.isFrontierEmpty()) {
+                stopped = budget.check(state.expandedCount());
+                if (stopped != null) {
+                    break;
+                }
+                current = frontierRemove(state);
+                state.countExpansion(snapshot.outDegree(current));
+
+                // only strategies that look at visits pay for the (shared-prefix) path
+                if (observesVisits()) {
+                    onVisit(buildPath(state, snapshot, current));
+                }
+
+                int hit = remaining > 0 ? Arrays.binarySearch(wanted, current) : -1;
+                if (hit >= 0) {
+                    Path p = buildPath(state, snapshot, current);
+                    p.setDestinationReached();
+                    reached[hit] = p;
+                    remaining--;
+                    if (remaining == 0 && stopEarly) {
+                        break;
                     }
                 }
-                else {
-                    return buildPath(current);
+
+                next.clear();
+                planNext(snapshot, current, state, next);
+                for (int i = 0; i < next.size(); i++) {
+                    int e = next.get(i);
+                    int adj = snapshot.target(e);
+                    if (!state.isVisited(adj)) {
+                        state.visit(adj, current, e);
+                        frontierAdd(state, adj);
+                    }
                 }
             }
+
+            Path deadEnd = remaining > 0 || !stopEarly ? buildPath(state, snapshot, current) : null;
+            if (deadEnd != null) {
+                deadEnd.setStopReason(stopped);
+            }
+            for (int i = 0; i < targets.length; i++) {
+                int at = targets[i] < 0 ? -1 : Arrays.binarySearch(wanted, targets[i]);
+                found[i] = at >= 0 && reached[at] != null ? reached[at] : deadEnd;
+            }
+        } finally {
+            releaseState(state);
         }
-        return buildPath(current);
     }
 
-    protected List<String> planNext(String current, List<String> visitedNames) {
-        return graph.getNeighbors(current);
+    // an idle state from this thread's pool (or a new one), hand it back with releaseState
+    protected SearchState acquireState() {
+        SearchState state = states.get().poll();
+        return state != null ? state : new SearchState();
     }
 
-    // init the nodeMap from the graph nodes
-    private Map<String, PathNode> initNodeMap() {
-        Map<String, PathNode> map = new HashMap<>();
-        for (String name : graph.getNodes()) {
+    protected void releaseState(SearchState state) {
+        SearchProbe.record(state.expandedCount(), state.scannedCount(), state.peakFrontier());
+        state.reset();
+        states.get().push(state);
+    }
 
-            name = name.toUpperCase();
-            map.put(name, new PathNode(name));
+    // appends the out-edge slots of current to follow onto out, in the order their targets get queued
+    // (default: every edge, in edge order). visited tells in O(1) whether a node was already reached,
+    // nodes that were are skipped anyway. slots rather than nodes so paths know each step's weight.
+    protected void planNext(GraphSnapshot graph, int current, VisitedView visited, IntList out) {
+        for (int e = graph.firstEdge(current); e < graph.endEdge(current); e++) {
+            out.add(e);
         }
-        return map;
     }
 
-    // rebuilds the path by going from child to parent till it reaches the end
-    private Path buildPath(PathNode dstNode) {
-        List<PathNode> path = new ArrayList<>();
-        for (PathNode at = dstNode; at != null; at = nodeMap.get(at.getParent())) {
-            path.add(at);
-        }
-        Collections.reverse(path);
-        return new Path(path);
+    // lazy Path over the shared-prefix PathNode chain for dstNode
+    protected static Path buildPath(SearchState state, GraphSnapshot snapshot, int dstNode) {
+        return new Path(state.pathTo(dstNode, snapshot));
     }
 
-    // operations that subclasses implement:
-    protected abstract Deque<PathNode> initFrontier();
-    protected abstract void frontierAdd(PathNode node);
-    protected abstract PathNode frontierRemove();
+    // operations that subclasses implement (the frontier lives in the per-call state):
+    protected abstract void frontierAdd(SearchState state, int node);
+    protected abstract int frontierRemove(SearchState state);
     
-    protected void onVisit(String pathSoFar) {
+    // return true if the path to a node only depends on the order nodes get discovered in,
+    // then one traversal can answer every dst from the same source (see searchAll)
+    protected boolean sharesTraversal() {
+        return false;
+    }
+
+    // return true if search() always returns the same path for the same graph, src and dst,
+    // which is what makes its results safe to keep in a PathCache
+    protected boolean isDeterministic() {
+        return false;
+    }
+
+    // return true to get onVisit callbacks
+    protected boolean observesVisits() {
+        return false;
+    }
+
+    protected void onVisit(Path pathSoFar) {
         // no operation by default
     }
 }
@@ -0,0 +1,187 @@
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+// immutable compressed-sparse-row (CSR) snapshot of a DotGraph
+// node labels get dense int ids (0..size-1), and node v's outgoing neighbors are
+// targets[offsets[v]] .. targets[offsets[v + 1] - 1], same idea for the reverse index.
+// searches over a snapshot only ever touch these int arrays. they're kept as buffers so a
+// snapshot can either wrap heap arrays (freeze) or sit directly on a memory-mapped file (SnapshotFile).
+
+public final class GraphSnapshot {
+    // heap snapshots: labels + a hash map, mapped snapshots: the file's own label dictionary
+    private final String[] labels;
+    private final Map<String, Integer> ids;
+    private final SnapshotFile.Labels mappedLabels;
+
+    // forward index
+    private final IntBuffer offsets;
+    private final IntBuffer targets;
+    private final DoubleBuffer weights;     // parallel to targets, null if every edge has the default weight
+
+    // reverse index (who points at v)
+    private final IntBuffer revOffsets;
+    private final IntBuffer sources;
+    private final DoubleBuffer revWeights;  // parallel to sources, null when weights is
+
+    // DotGraph version this was built from
+    final long version;
+
+    // built on first use, see reachability()
+    private volatile ReachabilityIndex reachability;
+
+    // labels must be upper-cased; offsets/targets(/weights) describe the forward edges in CSR form
+    GraphSnapshot(long version, String[] labels, int[] offsets, int[] targets, double[] weights) {
+        this.version = version;
+        this.labels = labels;
+        this.mappedLabels = null;
+        this.offsets = IntBuffer.wrap(offsets);
+        this.targets = IntBuffer.wrap(targets);
+        this.weights = weights == null ? null : DoubleBuffer.wrap(weights);
+
+        ids = new HashMap<>(labels.length * 2);
+        for (int i = 0; i < labels.length; i++) {
+            ids.put(labels[i], i);
+        }
+
+        // build the reverse index with a counting sort over the targets
+        int n = labels.length;
+        int[] rev = new int[n + 1];
+        for (int e = 0; e < offsets[n]; e++) {
+            rev[targets[e] + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            rev[v + 1] += rev[v];
+        }
+        int[] src = new int[offsets[n]];
+        double[] revW = weights == null ? null : new double[offsets[n]];
+        int[] fill = new int[n];
+        for (int u = 0; u < n; u++) {
+            for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                int v = targets[e];
+                int slot = rev[v] + fill[v]++;
+                src[slot] = u;
+                if (revW != null) {
+                    revW[slot] = weights[e];
+                }
+            }
+        }
+        revOffsets = IntBuffer.wrap(rev);
+        sources = IntBuffer.wrap(src);
+        revWeights = revW == null ? null : DoubleBuffer.wrap(revW);
+    }
+
+    // snapshot over already built (usually memory-mapped) indexes, nothing gets copied
+    GraphSnapshot(long version, SnapshotFile.Labels labels, IntBuffer offsets, IntBuffer targets,
+                  DoubleBuffer weights, IntBuffer revOffsets, IntBuffer sources, DoubleBuffer revWeights) {
+        this.version = version;
+        this.labels = null;
+        this.ids = null;
+        this.mappedLabels = labels;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.revOffsets = revOffsets;
+        this.sources = sources;
+        this.revWeights = revWeights;
+    }
+
+    // number of nodes
+    public int size() {
+        return offsets.limit() - 1;
+    }
+
+    // number of edges
+    public int edgeCount() {
+        return targets.limit();
+    }
+
+    // id of a label (case insensitive), or -1 if the node isn't in the snapshot
+    public int id(String label) {
+        String key = SymbolTable.upper(label);
+        if (mappedLabels != null) {
+            return mappedLabels.id(key);
+        }
+        Integer id = ids.get(key);
+        return id == null ? -1 : id;
+    }
+
+    public String label(int id) {
+        return labels != null ? labels[id] : mappedLabels.label(id);
+    }
+
+    // forward edges of v are the edge slots [firstEdge(v), endEdge(v))
+    public int firstEdge(int v) {
+        return offsets.get(v);
+    }
+
+    public int endEdge(int v) {
+        return offsets.get(v + 1);
+    }
+
+    public int target(int edge) {
+        return targets.get(edge);
+    }
+
+    // weight of an edge slot
+    public double weight(int edge) {
+        return weights == null ? Edge.DEFAULT_WEIGHT : weights.get(edge);
+    }
+
+    // weight of the edge u -> v, O(out-degree of u); NaN if there is no such edge
+    public double weight(int u, int v) {
+        for (int e = offsets.get(u), end = offsets.get(u + 1); e < end; e++) {
+            if (targets.get(e) == v) {
+                return weight(e);
+            }
+        }
+        return Double.NaN;
+    }
+
+    // false if every edge has the default weight
+    public boolean isWeighted() {
+        return weights != null;
+    }
+
+    public int outDegree(int v) {
+        return offsets.get(v + 1) - offsets.get(v);
+    }
+
+    // reverse edges of v are the slots [firstInEdge(v), endInEdge(v))
+    public int firstInEdge(int v) {
+        return revOffsets.get(v);
+    }
+
+    public int endInEdge(int v) {
+        return revOffsets.get(v + 1);
+    }
+
+    public int source(int inEdge) {
+        return sources.get(inEdge);
+    }
+
+    // weight of the edge behind a reverse slot, source(inEdge) -> v
+    public double inWeight(int inEdge) {
+        return revWeights == null ? Edge.DEFAULT_WEIGHT : revWeights.get(inEdge);
+    }
+
+    public int inDegree(int v) {
+        return revOffsets.get(v + 1) - revOffsets.get(v);
+    }
+
+    // SCC / reachability index over this snapshot, built the first time anyone asks
+    public ReachabilityIndex reachability() {
+        ReachabilityIndex r = reachability;
+        if (r == null) {
+            synchronized (this) {
+                r = reachability;
+                if (r == null) {
+                    r = new ReachabilityIndex(this);
+                    reachability = r;
+                }
+            }
+        }
+        return r;
+    }
+}
@@ -0,0 +1,104 @@
+import java.util.Arrays;
+
+// binary min-heap of int node ids keyed by double priorities, with decrease-key
+// everything lives in primitive arrays: heap[] holds the nodes, pos[v] is where v sits in heap[],
+// keys[v] is v's priority. nothing needs clearing between uses, contains() double checks pos against heap.
+
+public final class IndexedMinHeap {
+    private int[] heap = new int[0];
+    private int[] pos = new int[0];
+    private double[] keys = new double[0];
+    private int size;
+
+    // make room for node ids 0..n-1
+    public void ensureCapacity(int n) {
+        if (pos.length < n) {
+            heap = Arrays.copyOf(heap, n);
+            pos = Arrays.copyOf(pos, n);
+            keys = Arrays.copyOf(keys, n);
+        }
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int v) {
+        int p = pos[v];
+        return p >= 0 && p < size && heap[p] == v;
+    }
+
+    public void insert(int v, double key) {
+        heap[size] = v;
+        pos[v] = size;
+        keys[v] = key;
+        siftUp(size++);
+    }
+
+    // lowers v's key (v must be in the heap)
+    public void decreaseKey(int v, double key) {
+        keys[v] = key;
+        siftUp(pos[v]);
+    }
+
+    public double peekKey() {
+        return keys[heap[0]];
+    }
+
+    // removes and returns the node with the smallest key
+    public int poll() {
+        int top = heap[0];
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            pos[heap[0]] = 0;
+            siftDown(0);
+        }
+        pos[top] = -1;
+        return top;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    private void siftUp(int i) {
+        int v = heap[i];
+        double key = keys[v];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            int p = heap[parent];
+            if (keys[p] <= key) break;
+            heap[i] = p;
+            pos[p] = i;
+            i = parent;
+        }
+        heap[i] = v;
+        pos[v] = i;
+    }
+
+    private void siftDown(int i) {
+        int v = heap[i];
+        double key = keys[v];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int c = heap[child];
+            int right = child + 1;
+            if (right < size && keys[heap[right]] < keys[c]) {
+                child = right;
+                c = heap[child];
+            }
+            if (key <= keys[c]) break;
+            heap[i] = c;
+            pos[c] = i;
+            i = child;
+        }
+        heap[i] = v;
+        pos[v] = i;
+    }
+}
@@ -0,0 +1,335 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+// level-synchronous, direction-optimizing parallel BFS for very large graphs
+// every level is split into chunks that run on the common fork-join pool. small levels go
+// top-down (frontier nodes claim their unvisited neighbors through an atomic visited bitmap),
+// big levels go bottom-up (every unvisited node checks whether any in-neighbor is in the frontier,
+// and stops at the first one). switching follows Beamer et al's heuristic: go bottom-up once the
+// frontier's out-edges outnumber the unexplored edges / ALPHA, and back once the frontier shrinks
+// below n / BETA. the path found has the same length as sequential BFS, but when there are several
+// shortest paths which one comes back depends on thread timing.
+// search limits are checked between levels, and every POLL_INTERVAL nodes inside a level's chunks
+// (except the node count, which only goes up a whole level at a time).
+
+public class ParallelBFSGraphSearch extends GraphSearchTemplate {
+    private static final int ALPHA = 14;
+    private static final int BETA = 24;
+    // below this much work per level the fork-join overhead isn't worth it
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+    // nodes a chunk works through between looking at the search's deadline / token / interrupt flag
+    private static final int POLL_INTERVAL = 1 << 10;
+
+    @Override
+    public Path search(DotGraph graph, String src, String dst, SearchOptions options) {
+        SearchBudget budget = options.start();
+        GraphSnapshot snapshot = graph.freeze();
+        int start = startNode(snapshot, src);
+        int target = snapshot.id(dst);
+        int n = snapshot.size();
+        if (target < 0) {
+            return new Path(new PathNode(snapshot.label(start)));     // dst isn't in the graph, dead end
+        }
+
+        AtomicLongArray visited = new AtomicLongArray((n + 63) >>> 6);
+        int[] parent = new int[n];
+        parent[start] = -1;
+        visited.set(start >>> 6, 1L << start);
+
+        int[] frontier = {start};
+        int frontierSize = 1;
+        long[] frontierBits = null;         // set while we're going bottom-up
+        long frontierEdges = snapshot.outDegree(start);
+        long unexploredEdges = snapshot.edgeCount() - frontierEdges;
+
+        long expanded = 0;
+        long scanned = 0;
+        int peakFrontier = 1;
+        SearchOptions.StopReason stopped = null;
+        while (frontierSize > 0 && !isSet(visited, target)) {
+            stopped = budget.checkNow(expanded);
+            if (stopped != null) {
+                break;
+            }
+            boolean bottomUp = frontierBits != null
+                ? frontierSize >= n / BETA
+                : frontierEdges > unexploredEdges / ALPHA;
+
+            Level next;
+            if (bottomUp) {
+                if (frontierBits == null) {
+                    frontierBits = toBits(frontier, frontierSize, n);
+                }
+                next = bottomUpStep(snapshot, visited, parent, frontierBits, budget);
+                frontierBits = next.bits;
+                frontier = null;
+            }
+            else {
+                if (frontier == null) {
+                    frontier = toList(frontierBits, frontierSize);
+                    frontierBits = null;
+                }
+                next = topDownStep(snapshot, visited, parent, frontier, frontierSize, budget);
+                frontier = next.nodes;
+            }
+            expanded += next.expanded;
+            scanned += next.scanned;
+            frontierSize = next.size;
+            peakFrontier = Math.max(peakFrontier, frontierSize);
+            frontierEdges = next.edges;
+            unexploredEdges -= frontierEdges;
+            if (next.stopped != null && !isSet(visited, target)) {
+                stopped = next.stopped;     // the level was cut off, what's left of it isn't a real frontier
+                break;
+            }
+        }
+        SearchProbe.record(expanded, scanned, peakFrontier);
+
+        if (isSet(visited, target)) {
+            Path p = new Path(pathTo(snapshot, parent, target));
+            p.setDestinationReached();
+            return p;
+        }
+        // no single "last expanded node" in a parallel level, so a dead end (or partial path) is just the start
+        Path p = new Path(new PathNode(snapshot.label(start)));
+        p.setStopReason(stopped);
+        return p;
+    }
+
+    // result of expanding one level
+    private static final class Level {
+        final int[] nodes;      // top-down: the new frontier as a list
+        final long[] bits;      // bottom-up: the new frontier as a bitmap
+        final int size;
+        final long edges;       // out-edges of the new frontier
+        final long expanded;    // nodes looked at: the frontier top-down, the unvisited nodes bottom-up
+        final long scanned;     // edges looked at
+        final SearchOptions.StopReason stopped;     // non-null if chunks gave up part way through
+
+        Level(int[] nodes, long[] bits, int size, long edges, long expanded, long scanned,
+              SearchOptions.StopReason stopped) {
+            this.nodes = nodes;
+            this.bits = bits;
+            this.size = size;
+            this.edges = edges;
+            this.expanded = expanded;
+            this.scanned = scanned;
+            this.stopped = stopped;
+        }
+    }
+
+    // frontier nodes claim unvisited neighbors, each chunk collects what it claimed
+    private static Level topDownStep(GraphSnapshot g, AtomicLongArray visited, int[] parent,
+                                     int[] frontier, int frontierSize, SearchBudget budget) {
+        int chunks = chunkCount(frontierSize);
+        int chunkSize = (frontierSize + chunks - 1) / chunks;
+        IntList[] found = new IntList[chunks];
+        long[] degrees = new long[chunks];
+        long[] scans = new long[chunks];
+        SearchOptions.StopReason[] stops = new SearchOptions.StopReason[chunks];
+
+        run(chunks, frontierSize, c -> {
+            IntList local = new IntList();
+            long degree = 0;
+            long scan = 0;
+            int end = Math.min(frontierSize, (c + 1) * chunkSize);
+            for (int i = c * chunkSize; i < end; i++) {
+                if (i % POLL_INTERVAL == POLL_INTERVAL - 1 && (stops[c] = budget.poll()) != null) {
+                    break;
+                }
+                int u = frontier[i];
+                scan += g.outDegree(u);
+                for (int e = g.firstEdge(u); e < g.endEdge(u); e++) {
+                    int v = g.target(e);
+                    if (claim(visited, v)) {
+                        parent[v] = u;
+                        local.add(v);
+                        degree += g.outDegree(v);
+                    }
+                }
+            }
+            found[c] = local;
+            degrees[c] = degree;
+            scans[c] = scan;
+        });
+
+        int size = 0;
+        long edges = 0;
+        long scanned = 0;
+        for (int c = 0; c < chunks; c++) {
+            size += found[c].size();
+            edges += degrees[c];
+            scanned += scans[c];
+        }
+        int[] next = new int[size];
+        int at = 0;
+        for (IntList local : found) {
+            for (int i = 0; i < local.size(); i++) {
+                next[at++] = local.get(i);
+            }
+        }
+        return new Level(next, null, size, edges, frontierSize, scanned, firstStop(stops));
+    }
+
+    // every unvisited node looks for a parent in the frontier. chunks own whole 64-node words,
+    // so nobody else writes the visited / next words a chunk touches
+    private static Level bottomUpStep(GraphSnapshot g, AtomicLongArray visited, int[] parent, long[] frontierBits,
+                                      SearchBudget budget) {
+        int n = g.size();
+        int words = visited.length();
+        long[] nextBits = new long[words];
+        int chunks = chunkCount(n);
+        int wordsPerChunk = (words + chunks - 1) / chunks;
+        int[] sizes = new int[chunks];
+        long[] degrees = new long[chunks];
+        long[] checks = new long[chunks];
+        long[] scans = new long[chunks];
+        SearchOptions.StopReason[] stops = new SearchOptions.StopReason[chunks];
+
+        run(chunks, n, c -> {
+            int size = 0;
+            long degree = 0;
+            long check = 0;
+            long scan = 0;
+            int lastWord = Math.min(words, (c + 1) * wordsPerChunk);
+            for (int w = c * wordsPerChunk; w < lastWord; w++) {
+                if (w % (POLL_INTERVAL / 64) == POLL_INTERVAL / 64 - 1 && (stops[c] = budget.poll()) != null) {
+                    break;
+                }
+                long seen = visited.get(w);
+                if (seen == -1L) continue;
+                long claimed = 0;
+                int base = w << 6;
+                for (int bit = 0; bit < 64 && base + bit < n; bit++) {
+                    if ((seen & (1L << bit)) != 0) continue;
+                    int v = base + bit;
+                    check++;
+                    for (int e = g.firstInEdge(v); e < g.endInEdge(v); e++) {
+                        scan++;
+                        int u = g.source(e);
+                        if ((frontierBits[u >>> 6] & (1L << u)) != 0) {
+                            parent[v] = u;
+                            claimed |= 1L << bit;
+                            size++;
+                            degree += g.outDegree(v);
+                            break;
+                        }
+                    }
+                }
+                if (claimed != 0) {
+                    visited.set(w, seen | claimed);
+                    nextBits[w] = claimed;
+                }
+            }
+            sizes[c] = size;
+            degrees[c] = degree;
+            checks[c] = check;
+            scans[c] = scan;
+        });
+
+        int size = 0;
+        long edges = 0;
+        long expanded = 0;
+        long scanned = 0;
+        for (int c = 0; c < chunks; c++) {
+            size += sizes[c];
+            edges += degrees[c];
+            expanded += checks[c];
+            scanned += scans[c];
+        }
+        return new Level(null, nextBits, size, edges, expanded, scanned, firstStop(stops));
+    }
+
+    private static SearchOptions.StopReason firstStop(SearchOptions.StopReason[] stops) {
+        for (SearchOptions.StopReason stop : stops) {
+            if (stop != null) {
+                return stop;
+            }
+        }
+        return null;
+    }
+
+    // runs body(0..chunks-1), in parallel when there's enough work to make it worth it
+    private static void run(int chunks, int work, IntConsumer body) {
+        IntStream range = IntStream.range(0, chunks);
+        if (work >= PARALLEL_THRESHOLD && chunks > 1) {
+            range = range.parallel();
+        }
+        range.forEach(body);
+    }
+
+    private static int chunkCount(int work) {
+        if (work < PARALLEL_THRESHOLD) {
+            return 1;
+        }
+        // a few chunks per worker so uneven degrees still balance out
+        int workers = ForkJoinPool.getCommonPoolParallelism();
+        return Math.max(1, Math.min(work / 1024, workers * 4));
+    }
+
+    // sets v's bit, true if we were the ones who set it
+    private static boolean claim(AtomicLongArray visited, int v) {
+        int w = v >>> 6;
+        long bit = 1L << v;
+        while (true) {
+            long old = visited.get(w);
+            if ((old & bit) != 0) {
+                return false;
+            }
+            if (visited.compareAndSet(w, old, old | bit)) {
+                return true;
+            }
+        }
+    }
+
+    private static boolean isSet(AtomicLongArray visited, int v) {
+        return (visited.get(v >>> 6) & (1L << v)) != 0;
+    }
+
+    private static long[] toBits(int[] nodes, int size, int n) {
+        long[] bits = new long[(n + 63) >>> 6];
+        for (int i = 0; i < size; i++) {
+            bits[nodes[i] >>> 6] |= 1L << nodes[i];
+        }
+        return bits;
+    }
+
+    private static int[] toList(long[] bits, int size) {
+        int[] nodes = new int[size];
+        int at = 0;
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                nodes[at++] = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return nodes;
+    }
+
+    private static PathNode pathTo(GraphSnapshot g, int[] parent, int v) {
+        IntList chain = new IntList();
+        for (int at = v; at >= 0; at = parent[at]) {
+            chain.add(at);
+        }
+        PathNode path = new PathNode(g.label(chain.get(chain.size() - 1)));
+        for (int i = chain.size() - 2; i >= 0; i--) {
+            int node = chain.get(i);
+            path = path.append(g.label(node), g.weight(chain.get(i + 1), node));
+        }
+        return path;
+    }
+
+    // only used if someone drives this through the plain template loop, behaves like BFS then
+    @Override
+    protected void frontierAdd(SearchState state, int node) {
+        state.addLast(node);
+    }
+
+    @Override
+    protected int frontierRemove(SearchState state) {
+        return state.pollFirst();
+    }
+}
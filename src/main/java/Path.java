@@ -1,20 +1,51 @@
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
+
+// lazy view over a chain of PathNodes
+// nothing gets walked or copied until someone actually asks for the node list or a string
 
 public class Path {
-    private final List<PathNode> nodes;
+    private final PathNode last;
+    private List<PathNode> nodes;       // built on first getNodes()
     private boolean reachedDestination = false;
-    private boolean done = false;
+    private SearchOptions.StopReason stopReason;     // null unless the search ran into a limit
 
-    public Path(List<PathNode> nodes) {
-        this.nodes = nodes;
+    public Path(PathNode last) {
+        this.last = last;
     }
 
     public List<PathNode> getNodes() {
-        return nodes;
+        List<PathNode> list = nodes;
+        if (list == null) {
+            PathNode[] arr = new PathNode[length()];
+            for (PathNode at = last; at != null; at = at.getParent()) {
+                arr[at.getDepth() - 1] = at;
+            }
+            list = Collections.unmodifiableList(Arrays.asList(arr));
+            nodes = list;
+        }
+        return list;
     }
 
-    public void setDestinationReached() {
+    // last node of the path (null for an empty path)
+    public PathNode getLast() {
+        return last;
+    }
+
+    // number of nodes on the path, O(1)
+    public int length() {
+        return last == null ? 0 : last.getDepth();
+    }
+
+    // total edge weight along the path (hop count when the graph has no weights)
+    public double getCost() {
+        return last == null ? 0 : last.getCost();
+    }
+
+    // only the strategies set these, while they build the path. after that it doesn't change,
+    // which is what lets PathCache hand the same Path to every caller
+    void setDestinationReached() {
         reachedDestination = true;
     }
 
@@ -22,28 +53,47 @@ public class Path {
         return reachedDestination;
     }
 
+    void setStopReason(SearchOptions.StopReason reason) {
+        stopReason = reason;
+    }
+
+    // why the search stopped before it was done, null if it wasn't cut short
+    public SearchOptions.StopReason getStopReason() {
+        return stopReason;
+    }
+
+    // true if the search gave up early, the path then ends at the last node it expanded
+    public boolean isPartial() {
+        return stopReason != null;
+    }
+
     @Override
     public String toString() {
-        String base = nodes.stream()
-            .map(PathNode::getName)
-            .collect(Collectors.joining("->"));
-
-        base = base.toLowerCase();
+        StringBuilder sb = new StringBuilder();
+        for (PathNode n : getNodes()) {
+            if (sb.length() > 0) sb.append("->");
+            sb.append(n.getName().toLowerCase());
+        }
 
         if (reachedDestination == true) {
-            base = base + " (Target node!)";
+            sb.append(" (Target node!)");
+        }
+        else if (stopReason != null) {
+            sb.append(" (Stopped early: ").append(stopReason).append(")");
         }
         else {
-            base = base + " (Dead end)";
+            sb.append(" (Dead end)");
         }
-        return base;
+        return sb.toString();
     }
 
     public String getPathArray() {
-        String body = nodes.stream()
-            .map(n -> "Node{" + n.getName().toLowerCase() + "}")
-            .collect(Collectors.joining(", "));
-        return "Path{nodes=[" + body + "]}";
-        
+        StringBuilder sb = new StringBuilder("Path{nodes=[");
+        List<PathNode> list = getNodes();
+        for (int i = 0; i < list.size(); i++) {
+            if (i > 0) sb.append(", ");
+            sb.append("Node{").append(list.get(i).getName().toLowerCase()).append("}");
+        }
+        return sb.append("]}").toString();
     }
 }
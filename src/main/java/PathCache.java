@@ -0,0 +1,101 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// bounded LRU cache of GraphSearch results, see DotGraph.enablePathCache
+// keyed by (algorithm, src, dst) with labels in canonical case, and only used for algorithms whose
+// strategy is deterministic (BFS, DFS, bidirectional BFS, Dijkstra, A*); random walks and the
+// parallel BFS (whose tie-breaking depends on thread timing) always run.
+// the cache remembers the graph version its entries were computed at. once the graph's version
+// moves on they're all stale at once, so the first lookup at a new version just drops them all.
+// a Path can't be changed outside this package once a strategy has built it (and its PathNode chain
+// is immutable), so cached ones are handed out as-is.
+
+public final class PathCache {
+    private record Key(DotGraph.Algorithm algo, String src, String dst) {
+    }
+
+    // wrapper so a cached "no path" can be told apart from a miss
+    record Entry(Path path) {
+    }
+
+    private final int maxEntries;
+    private final Map<Key, Entry> entries;
+    private long version;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    PathCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Path cache needs room for at least one entry: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);     // access order, for LRU eviction
+    }
+
+    // looks up a search result computed at exactly this graph version, null on a miss
+    synchronized Entry lookup(DotGraph.Algorithm algo, String src, String dst, long graphVersion) {
+        if (graphVersion != version) {
+            entries.clear();
+            version = graphVersion;
+        }
+        Entry entry = entries.get(new Key(algo, SymbolTable.upper(src), SymbolTable.upper(dst)));
+        if (entry != null) {
+            hits++;
+        }
+        else {
+            misses++;
+        }
+        return entry;
+    }
+
+    // graphVersion is the version the search started at, a result from before a concurrent
+    // mutation is simply not stored
+    synchronized void store(DotGraph.Algorithm algo, String src, String dst, long graphVersion, Path path) {
+        if (graphVersion != version) {
+            return;
+        }
+        entries.put(new Key(algo, SymbolTable.upper(src), SymbolTable.upper(dst)), new Entry(path));
+        if (entries.size() > maxEntries) {
+            entries.remove(entries.keySet().iterator().next());
+            evictions++;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    // lookups answered from the cache / that had to run the search
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    // entries pushed out by the size bound (not counting the ones dropped by a version change)
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PathCache(" + entries.size() + "/" + maxEntries + ", hits=" + hits + ", misses=" + misses
+            + ", evictions=" + evictions + ")";
+    }
+}
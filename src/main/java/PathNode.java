@@ -1,43 +1,54 @@
-import java.util.ArrayList;
-import java.util.List;
+// one step of a path, linked back to the step before it
+// paths are persistent: extending one just makes a new PathNode pointing at the old tail,
+// so every path that shares a prefix shares the same PathNode objects for that prefix.
 
 public class PathNode {
-    private String name;
-    private String parent;
-    private final List<PathNode> adjacent = new ArrayList<>();
-    private boolean explored;
+    private final String name;
+    private final PathNode parent;
+    private final int depth;
+    private final double cost;
 
     public PathNode(String name) {
-        this.name = name;
-        this.parent = null;
-        this.explored = false;
+        this(name, null, 0);
     }
 
-    public String getName() {
-        return name;
+    public PathNode(String name, PathNode parent) {
+        this(name, parent, Edge.DEFAULT_WEIGHT);
     }
 
-    public void setParent(String parent) {
+    // stepCost is the weight of the edge parent -> this (ignored for the first node)
+    public PathNode(String name, PathNode parent, double stepCost) {
+        this.name = name;
         this.parent = parent;
+        this.depth = parent == null ? 1 : parent.depth + 1;
+        this.cost = parent == null ? 0 : parent.cost + stepCost;
+    }
+
+    public String getName() {
+        return name;
     }
 
-    public String getParent() {
+    // the step before this one, null at the start of the path
+    public PathNode getParent() {
         return parent;
     }
 
-    public List<PathNode> getAdjacent() {
-        return adjacent;
+    // number of nodes from the start of the path up to and including this one
+    public int getDepth() {
+        return depth;
     }
 
-    public boolean isExplored() {
-        return explored;
+    // total weight of the edges from the start of the path up to this node
+    public double getCost() {
+        return cost;
     }
 
-    public void setExplored(boolean explored) {
-        this.explored = explored;
+    // O(1), the new path shares this whole path as its prefix
+    public PathNode append(String next) {
+        return new PathNode(next, this);
     }
 
-    public void addAdjacent(PathNode node) {
-        adjacent.add(node);
+    public PathNode append(String next, double stepCost) {
+        return new PathNode(next, this, stepCost);
     }
 }
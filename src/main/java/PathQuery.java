@@ -0,0 +1,4 @@
+// one (src, dst) pair for DotGraph.GraphSearchBatch
+
+public record PathQuery(String src, String dst) {
+}
@@ -1,9 +1,4 @@
-import java.util.ArrayDeque;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Deque;
-import java.util.List;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 // Random walk using the template pattern with built-in variations
 
@@ -15,7 +10,6 @@ public class RWGraphSearch extends GraphSearchTemplate {
     }
 
     private final Mode mode;
-    private static final Random rnd = new Random();
 
     public RWGraphSearch(Mode mode) {
         super();
@@ -23,58 +17,48 @@ public class RWGraphSearch extends GraphSearchTemplate {
     }
 
     @Override
-    protected Deque<PathNode> initFrontier() {
-        return new ArrayDeque<>();
+    protected void frontierAdd(SearchState state, int node) {
+        state.addFirst(node);
     }
 
     @Override
-    protected void frontierAdd(PathNode node) {
-        frontier.addFirst(node);
+    protected int frontierRemove(SearchState state) {
+        return state.pollFirst();
     }
 
+    // Template calls planNext(...) to get the edge to follow.
     @Override
-    protected PathNode frontierRemove() {
-        return frontier.removeFirst();
-    }
-
-    // Template calls planNext(...) to get possible neighbors to enqueue.
-    @Override
-    protected List<String> planNext(String current, List<String> visitedNames) {
-        List<String> nbrs = new ArrayList<>(graph.getNeighbors(current));
+    protected void planNext(GraphSnapshot graph, int current, VisitedView visited, IntList out) {
+        // per-thread generator, a shared Random would make concurrent walks contend on its seed
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        int first = graph.firstEdge(current);
+        int end = graph.endEdge(current);
         switch (mode) {
             case FULLY_RANDOM:
-                if (nbrs.isEmpty()) return Collections.emptyList();
-                return Collections.singletonList(
-                    nbrs.get(rnd.nextInt(nbrs.size()))
-                );
-
-            case RANDOM_UNVISITED:
-                List<String> unvisited = new ArrayList<>();
-                for (String n : nbrs) {
-                    if (!visitedNames.contains(n)) {
-                        unvisited.add(n);
-                    }
+                if (end > first) {
+                    out.add(first + rnd.nextInt(end - first));
                 }
-                if (unvisited.isEmpty()) return Collections.emptyList();
-                return Collections.singletonList(
-                    unvisited.get(rnd.nextInt(unvisited.size()))
-                );
+                return;
 
+            case RANDOM_UNVISITED:
             case HISTORY_BACKTRACK:
-                List<String> unvis = new ArrayList<>();
-                for (String n : nbrs) {
-                    if (!visitedNames.contains(n)) unvis.add(n);
+                // pick uniformly among the unvisited neighbors in one pass (reservoir sampling)
+                // for HISTORY_BACKTRACK an empty pick means we backtrack via the frontier
+                int pick = -1;
+                int seen = 0;
+                for (int e = first; e < end; e++) {
+                    int n = graph.target(e);
+                    if (!visited.isVisited(n) && rnd.nextInt(++seen) == 0) {
+                        pick = e;
+                    }
                 }
-                if (!unvis.isEmpty()) {
-                    return Collections.singletonList(
-                        unvis.get(rnd.nextInt(unvis.size()))
-                    );
+                if (pick >= 0) {
+                    out.add(pick);
                 }
-                // backtrack
-                return Collections.emptyList();
+                return;
 
             default:
-                return Collections.emptyList();
+                return;
         }
     }
 }
@@ -0,0 +1,194 @@
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Monte Carlo random walks: runs many independent walks from src in parallel and aggregates
+// what happened (WalkStats) instead of returning / printing each walk.
+// every walk gets its own SplittableRandom split off the user's seed. walks are dealt out in
+// fixed-size chunks whose generators only depend on the chunk's index, so the same seed gives
+// the same stats no matter how many threads ran them (unless a walk runs into the time budget).
+// walks run straight over the graph's frozen snapshot:
+//   FULLY_RANDOM      - a plain random walk, any out-neighbor, revisits allowed
+//   RANDOM_UNVISITED  - only steps to nodes this walk hasn't been on, stops when there are none
+//   HISTORY_BACKTRACK - like RANDOM_UNVISITED, but when stuck it steps back along its own
+//                       history and tries from there (a step back counts as a step)
+// a walk ends when it reaches dst, gets stuck, or runs out of steps or time.
+
+public final class RandomWalkEngine {
+    // walks per chunk, fixed so a walk's generator doesn't depend on how the work was split up
+    private static final int CHUNK = 256;
+    // steps between clock reads, nanoTime on every step would cost more than the step
+    private static final int CLOCK_CHECK = 64;
+
+    private final RWGraphSearch.Mode mode;
+    private final long seed;
+    private final int maxSteps;
+    private final long timeBudgetNanos;
+
+    // maxSteps and timeBudget are per walk
+    public RandomWalkEngine(RWGraphSearch.Mode mode, long seed, int maxSteps, Duration timeBudget) {
+        if (mode == null || maxSteps < 1 || timeBudget == null || timeBudget.isNegative() || timeBudget.isZero()) {
+            throw new IllegalArgumentException("Bad walk settings: " + mode + ", " + maxSteps + " steps, " + timeBudget);
+        }
+        this.mode = mode;
+        this.seed = seed;
+        this.maxSteps = maxSteps;
+        this.timeBudgetNanos = timeBudget.toNanos();
+    }
+
+    // runs the walks on the common fork-join pool
+    public WalkStats run(DotGraph graph, String src, String dst, int walks) {
+        return run(graph, src, dst, walks, ForkJoinPool.commonPool());
+    }
+
+    public WalkStats run(DotGraph graph, String src, String dst, int walks, Executor executor) {
+        if (walks < 0) {
+            throw new IllegalArgumentException("Negative walk count: " + walks);
+        }
+        GraphSnapshot snapshot = graph.freeze();
+        int start = snapshot.id(src);
+        if (start < 0) {
+            throw new IllegalArgumentException("Unknown node: " + src);
+        }
+        int target = snapshot.id(dst);     // -1 if dst isn't in the graph, no walk ever hits it then
+
+        int chunks = (walks + CHUNK - 1) / CHUNK;
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] chunkRandoms = new SplittableRandom[chunks];
+        for (int c = 0; c < chunks; c++) {
+            chunkRandoms[c] = root.split();
+        }
+
+        // one task per thread that can actually run, each with one stats / walker pair (two arrays
+        // of n) it reuses for every chunk it claims. so memory is parallelism x n, not walks or chunks
+        int tasks = Math.max(1, Math.min(chunks, parallelism(executor)));
+        AtomicInteger nextChunk = new AtomicInteger();
+        List<CompletableFuture<WalkStats>> futures = new ArrayList<>(tasks);
+        for (int t = 0; t < tasks; t++) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                WalkStats stats = new WalkStats(snapshot);
+                Walker walker = new Walker(snapshot.size());
+                for (int c = nextChunk.getAndIncrement(); c < chunks; c = nextChunk.getAndIncrement()) {
+                    int count = Math.min(CHUNK, walks - c * CHUNK);
+                    for (int i = 0; i < count; i++) {
+                        walk(snapshot, start, target, chunkRandoms[c].split(), walker, stats);
+                    }
+                }
+                return stats;
+            }, executor));
+        }
+
+        // merged into the first task's stats, there's always at least one
+        WalkStats total;
+        try {
+            total = futures.get(0).join();
+            for (int t = 1; t < tasks; t++) {
+                total.merge(futures.get(t).join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return total;
+    }
+
+    // how many tasks the executor can run at once, as far as we can tell
+    private static int parallelism(Executor executor) {
+        if (executor instanceof ForkJoinPool pool) {
+            return pool.getParallelism();
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    private void walk(GraphSnapshot graph, int start, int target, SplittableRandom rnd, Walker walker, WalkStats stats) {
+        long deadline = System.nanoTime() + timeBudgetNanos;
+        int stamp = walker.nextStamp();
+        IntList history = walker.history;
+        history.clear();
+        history.add(start);
+        walker.marks[start] = stamp;
+        stats.visit(start);
+
+        int current = start;
+        int steps = 0;
+        while (true) {
+            if (current == target) {
+                stats.hit(steps);
+                return;
+            }
+            if (steps == maxSteps) {
+                stats.outOfSteps();
+                return;
+            }
+            if (steps % CLOCK_CHECK == CLOCK_CHECK - 1 && System.nanoTime() - deadline > 0) {
+                stats.outOfTime();
+                return;
+            }
+            int next = pick(graph, current, rnd, walker.marks, stamp);
+            if (next >= 0) {
+                if (mode != RWGraphSearch.Mode.FULLY_RANDOM) {
+                    walker.marks[next] = stamp;
+                    history.add(next);
+                }
+            }
+            else if (mode == RWGraphSearch.Mode.HISTORY_BACKTRACK && history.size() > 1) {
+                history.removeLast();
+                next = history.get(history.size() - 1);
+            }
+            else {
+                stats.stuck();
+                return;
+            }
+            current = next;
+            steps++;
+            stats.visit(current);
+        }
+    }
+
+    // next node for the walk, -1 if there's nowhere to go
+    private int pick(GraphSnapshot graph, int current, SplittableRandom rnd, int[] marks, int stamp) {
+        int first = graph.firstEdge(current);
+        int end = graph.endEdge(current);
+        if (mode == RWGraphSearch.Mode.FULLY_RANDOM) {
+            return end > first ? graph.target(first + rnd.nextInt(end - first)) : -1;
+        }
+        // uniform among the unvisited neighbors in one pass (reservoir sampling)
+        int pick = -1;
+        int seen = 0;
+        for (int e = first; e < end; e++) {
+            int n = graph.target(e);
+            if (marks[n] != stamp && rnd.nextInt(++seen) == 0) {
+                pick = n;
+            }
+        }
+        return pick;
+    }
+
+    // per-task scratch space, reused by every walk the task runs
+    private static final class Walker {
+        final int[] marks;          // marks[v] == stamp: v is on the current walk
+        final IntList history = new IntList();
+        int stamp;
+
+        Walker(int n) {
+            marks = new int[n];
+        }
+
+        int nextStamp() {
+            if (++stamp == 0) {     // wrapped around, old marks could match again
+                Arrays.fill(marks, 0);
+                stamp = 1;
+            }
+            return stamp;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+import java.util.Arrays;
+
+// answers "can u reach v?" over a GraphSnapshot without searching the graph
+// the graph is condensed into its strongly connected components (iterative Tarjan, so deep graphs
+// don't blow the stack). Tarjan numbers the components in reverse topological order, so every
+// DAG edge goes from a higher component id to a lower one, and u can only reach v if comp(u) >= comp(v).
+// on top of that every component gets reachability labels:
+//  - up to BITSET_LIMIT components: the full transitive closure as one bitset row per component,
+//    every query is a single bit test
+//  - above that: GRAIL-style interval labels [low, post] from LABELINGS different DFS orders of the DAG.
+//    if u reaches v, v's interval sits inside u's in every labeling, so most negative queries stop
+//    at a couple of int compares. what's left gets a DFS over the DAG that's pruned by the same tests.
+// built once per snapshot (see GraphSnapshot.reachability), so any mutation makes it stale and the
+// next query after it rebuilds it along with the snapshot.
+
+public final class ReachabilityIndex {
+    static final int BITSET_LIMIT = 1 << 12;
+    private static final int LABELINGS = 2;
+
+    private final int[] comp;               // node id -> component id
+    private final int components;
+    // condensation DAG in CSR form, successors de-duplicated
+    private final int[] dagOffsets;
+    private final int[] dagTargets;
+    private final long[][] closure;          // closure[c] has bit d set if c reaches d, null above BITSET_LIMIT
+    private final int[][] low;               // per labeling
+    private final int[][] post;
+    // visit stamps for the pruned DFS fallback, per thread so concurrent queries don't collide
+    private final ThreadLocal<int[]> marks;
+    private final ThreadLocal<int[]> stamp = ThreadLocal.withInitial(() -> new int[1]);
+
+    ReachabilityIndex(GraphSnapshot graph) {
+        int n = graph.size();
+        comp = new int[n];
+        components = tarjan(graph, comp);
+
+        // condense: one pass over the edges, a stamp per component to drop duplicate DAG edges
+        int[] count = new int[components + 1];
+        int[] seen = new int[components];
+        Arrays.fill(seen, -1);
+        IntList targets = new IntList(Math.max(16, graph.edgeCount() / 4));
+        int[][] byComp = groupByComponent(n);
+        for (int c = 0; c < components; c++) {
+            for (int v : byComp[c]) {
+                for (int e = graph.firstEdge(v); e < graph.endEdge(v); e++) {
+                    int d = comp[graph.target(e)];
+                    if (d != c && seen[d] != c) {
+                        seen[d] = c;
+                        targets.add(d);
+                        count[c + 1]++;
+                    }
+                }
+            }
+        }
+        for (int c = 0; c < components; c++) {
+            count[c + 1] += count[c];
+        }
+        dagOffsets = count;
+        dagTargets = targets.toArray();
+
+        if (components <= BITSET_LIMIT) {
+            closure = buildClosure();
+            low = null;
+            post = null;
+            marks = null;
+        }
+        else {
+            closure = null;
+            low = new int[LABELINGS][];
+            post = new int[LABELINGS][];
+            for (int k = 0; k < LABELINGS; k++) {
+                label(k);
+            }
+            marks = ThreadLocal.withInitial(() -> new int[components]);
+        }
+    }
+
+    // number of strongly connected components
+    public int componentCount() {
+        return components;
+    }
+
+    // component of node id v
+    public int component(int v) {
+        return comp[v];
+    }
+
+    // whether there's a path from node id u to node id v (every node reaches itself)
+    public boolean reaches(int u, int v) {
+        int cu = comp[u];
+        int cv = comp[v];
+        if (cu == cv) {
+            return true;
+        }
+        if (cu < cv) {
+            return false;       // v's component comes earlier in topological order
+        }
+        if (closure != null) {
+            return (closure[cu][cv >>> 6] & (1L << cv)) != 0;
+        }
+        if (!mayReach(cu, cv)) {
+            return false;
+        }
+        return search(cu, cv);
+    }
+
+    // iterative Tarjan, fills comp[] and returns the number of components
+    private static int tarjan(GraphSnapshot graph, int[] comp) {
+        int n = graph.size();
+        int[] index = new int[n];
+        int[] lowlink = new int[n];
+        Arrays.fill(index, -1);
+        Arrays.fill(comp, -1);
+        int[] stack = new int[n];           // Tarjan's node stack
+        int[] callNode = new int[n];        // explicit recursion stack: node + next edge to look at
+        int[] callEdge = new int[n];
+        int sp = 0;
+        int counter = 0;
+        int components = 0;
+
+        for (int s = 0; s < n; s++) {
+            if (index[s] >= 0) {
+                continue;
+            }
+            int csp = 0;
+            index[s] = lowlink[s] = counter++;
+            stack[sp++] = s;
+            callNode[csp] = s;
+            callEdge[csp++] = graph.firstEdge(s);
+            while (csp > 0) {
+                int v = callNode[csp - 1];
+                int e = callEdge[csp - 1];
+                if (e < graph.endEdge(v)) {
+                    callEdge[csp - 1]++;
+                    int w = graph.target(e);
+                    if (index[w] < 0) {
+                        index[w] = lowlink[w] = counter++;
+                        stack[sp++] = w;
+                        callNode[csp] = w;
+                        callEdge[csp++] = graph.firstEdge(w);
+                    }
+                    else if (comp[w] < 0) {     // still on the stack
+                        lowlink[v] = Math.min(lowlink[v], index[w]);
+                    }
+                    continue;
+                }
+                csp--;
+                if (lowlink[v] == index[v]) {
+                    int w;
+                    do {
+                        w = stack[--sp];
+                        comp[w] = components;
+                    } while (w != v);
+                    components++;
+                }
+                if (csp > 0) {
+                    int parent = callNode[csp - 1];
+                    lowlink[parent] = Math.min(lowlink[parent], lowlink[v]);
+                }
+            }
+        }
+        return components;
+    }
+
+    // node ids of every component, in node id order
+    private int[][] groupByComponent(int n) {
+        int[] size = new int[components];
+        for (int v = 0; v < n; v++) {
+            size[comp[v]]++;
+        }
+        int[][] members = new int[components][];
+        for (int c = 0; c < components; c++) {
+            members[c] = new int[size[c]];
+            size[c] = 0;
+        }
+        for (int v = 0; v < n; v++) {
+            int c = comp[v];
+            members[c][size[c]++] = v;
+        }
+        return members;
+    }
+
+    // successors always have smaller ids, so one pass in id order sees them finished already
+    private long[][] buildClosure() {
+        int words = (components + 63) >>> 6;
+        long[][] rows = new long[components][];
+        for (int c = 0; c < components; c++) {
+            long[] row = new long[words];
+            row[c >>> 6] |= 1L << c;
+            for (int i = dagOffsets[c]; i < dagOffsets[c + 1]; i++) {
+                long[] succ = rows[dagTargets[i]];
+                for (int w = 0; w < words; w++) {
+                    row[w] |= succ[w];
+                }
+            }
+            rows[c] = row;
+        }
+        return rows;
+    }
+
+    // one GRAIL labeling: post-order rank from a DFS over the DAG, and low = smallest rank reachable.
+    // even labelings start from the sources and take successors in stored order, odd ones go the
+    // other way round, so they disagree on which branches get the low ranks and rule out more pairs
+    private void label(int k) {
+        int[] lo = new int[components];
+        int[] po = new int[components];
+        boolean reverse = (k & 1) == 1;
+        int[] callNode = new int[components];
+        int[] callEdge = new int[components];
+        int rank = 0;
+        for (int r = 0; r < components; r++) {
+            int root = reverse ? r : components - 1 - r;
+            if (po[root] != 0) {
+                continue;
+            }
+            int csp = 0;
+            callNode[csp] = root;
+            callEdge[csp++] = 0;
+            po[root] = -1;      // on the way, not ranked yet
+            while (csp > 0) {
+                int c = callNode[csp - 1];
+                int i = callEdge[csp - 1]++;
+                int degree = dagOffsets[c + 1] - dagOffsets[c];
+                if (i < degree) {
+                    int d = dagTargets[reverse ? dagOffsets[c + 1] - 1 - i : dagOffsets[c] + i];
+                    if (po[d] == 0) {
+                        po[d] = -1;
+                        callNode[csp] = d;
+                        callEdge[csp++] = 0;
+                    }
+                    continue;
+                }
+                csp--;
+                po[c] = ++rank;
+                int l = rank;
+                for (int j = dagOffsets[c]; j < dagOffsets[c + 1]; j++) {
+                    l = Math.min(l, lo[dagTargets[j]]);
+                }
+                lo[c] = l;
+            }
+        }
+        low[k] = lo;
+        post[k] = po;
+    }
+
+    // false if some labeling proves cu can't reach cv
+    private boolean mayReach(int cu, int cv) {
+        for (int k = 0; k < LABELINGS; k++) {
+            if (low[k][cv] < low[k][cu] || post[k][cv] > post[k][cu]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // DFS over the DAG from cu, never entering a component the topological order or labels rule out
+    private boolean search(int cu, int cv) {
+        int[] mark = marks.get();
+        int[] s = stamp.get();
+        if (++s[0] == 0) {      // wrapped around, old stamps could collide
+            Arrays.fill(mark, 0);
+            s[0] = 1;
+        }
+        int id = s[0];
+        IntList todo = new IntList(16);
+        todo.add(cu);
+        mark[cu] = id;
+        while (!todo.isEmpty()) {
+            int c = todo.removeLast();
+            for (int i = dagOffsets[c]; i < dagOffsets[c + 1]; i++) {
+                int d = dagTargets[i];
+                if (d == cv) {
+                    return true;
+                }
+                if (mark[d] != id && d > cv && mayReach(d, cv)) {
+                    mark[d] = id;
+                    todo.add(d);
+                }
+            }
+        }
+        return false;
+    }
+}
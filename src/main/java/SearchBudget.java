@@ -0,0 +1,52 @@
+// the limits of one running search, made by SearchOptions.start()
+// strategies call check() once per expanded node: the node count is compared every time, the
+// clock / token / interrupt flag only every CHECK_INTERVAL nodes, so a search without limits
+// pays next to nothing for it.
+
+final class SearchBudget {
+    static final int CHECK_INTERVAL = 64;
+
+    private final long maxExpanded;
+    private final boolean hasDeadline;
+    private final long deadlineNanos;       // System.nanoTime() based
+    private final CancellationToken token;
+    private final Thread owner;             // interrupts go to the thread that started the search
+
+    SearchBudget(long maxExpanded, boolean hasDeadline, long deadlineNanos, CancellationToken token) {
+        this.maxExpanded = maxExpanded;
+        this.hasDeadline = hasDeadline;
+        this.deadlineNanos = deadlineNanos;
+        this.token = token;
+        this.owner = Thread.currentThread();
+    }
+
+    // why the search has to stop now that it expanded this many nodes, null to keep going
+    SearchOptions.StopReason check(long expanded) {
+        if (expanded % CHECK_INTERVAL != 0 && expanded < maxExpanded) {
+            return null;
+        }
+        return checkNow(expanded);
+    }
+
+    // same without skipping the clock, for callers that only check now and then anyway
+    SearchOptions.StopReason checkNow(long expanded) {
+        if (expanded >= maxExpanded) {
+            return SearchOptions.StopReason.MAX_EXPANDED;
+        }
+        return poll();
+    }
+
+    // checks everything but the node count, safe to call from any thread
+    SearchOptions.StopReason poll() {
+        if (token != null && token.isCancelled()) {
+            return SearchOptions.StopReason.CANCELLED;
+        }
+        if (owner.isInterrupted()) {
+            return SearchOptions.StopReason.INTERRUPTED;
+        }
+        if (hasDeadline && System.nanoTime() - deadlineNanos >= 0) {
+            return SearchOptions.StopReason.DEADLINE;
+        }
+        return null;
+    }
+}
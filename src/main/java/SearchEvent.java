@@ -0,0 +1,46 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// JFR event for a GraphSearch call, committed whenever a recording has it enabled (it is by default):
+//   java -XX:StartFlightRecording=filename=search.jfr ...
+//   jfr print --events graph.Search search.jfr
+// the event's duration is the search's wall time. when no recording is running the event is never
+// filled in, and the JIT gets rid of the allocation.
+
+@Name("graph.Search")
+@Label("Graph Search")
+@Category("Graph")
+@Description("One DotGraph.GraphSearch call")
+@StackTrace(false)
+final class SearchEvent extends jdk.jfr.Event {
+    @Label("Algorithm")
+    String algorithm;
+
+    @Label("Source")
+    String src;
+
+    @Label("Destination")
+    String dst;
+
+    @Label("Nodes Expanded")
+    long nodesExpanded;
+
+    @Label("Edges Scanned")
+    long edgesScanned;
+
+    @Label("Peak Frontier")
+    int peakFrontier;
+
+    @Label("Path Length")
+    int pathLength;
+
+    @Label("Reached")
+    boolean reached;
+
+    @Label("Stop Reason")
+    @Description("Limit the search ran into, if any")
+    String stopReason;
+}
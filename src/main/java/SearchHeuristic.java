@@ -0,0 +1,10 @@
+// estimate of the remaining cost from node to target, used by A*
+// labels are upper-cased like everywhere else. to get shortest paths the estimate must never
+// overshoot the real cost (admissible); a heuristic that always returns 0 turns A* into Dijkstra.
+
+@FunctionalInterface
+public interface SearchHeuristic {
+    SearchHeuristic NONE = (node, target) -> 0;
+
+    double estimate(String node, String target);
+}
@@ -0,0 +1,196 @@
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// in-process metrics registry for searches: per algorithm counts, work done and a latency histogram
+//   SearchMetrics metrics = new SearchMetrics();
+//   graph.setSearchObserver(metrics);
+//   ... metrics.get(Algorithm.BFS).getLatency().percentile(0.99)
+// everything is lock-free adders, so many searching threads can report at once.
+
+public final class SearchMetrics implements SearchObserver {
+    private final Map<DotGraph.Algorithm, Stats> byAlgorithm;
+
+    public SearchMetrics() {
+        Map<DotGraph.Algorithm, Stats> map = new EnumMap<>(DotGraph.Algorithm.class);
+        for (DotGraph.Algorithm algo : DotGraph.Algorithm.values()) {
+            map.put(algo, new Stats());
+        }
+        byAlgorithm = Collections.unmodifiableMap(map);
+    }
+
+    @Override
+    public void searchFinished(SearchTrace trace) {
+        byAlgorithm.get(trace.algorithm()).add(trace);
+    }
+
+    public Stats get(DotGraph.Algorithm algo) {
+        return byAlgorithm.get(algo);
+    }
+
+    public long getSearches() {
+        long total = 0;
+        for (Stats stats : byAlgorithm.values()) {
+            total += stats.getSearches();
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<DotGraph.Algorithm, Stats> entry : byAlgorithm.entrySet()) {
+            if (entry.getValue().getSearches() > 0) {
+                sb.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    public static final class Stats {
+        private final LongAdder searches = new LongAdder();
+        private final LongAdder reached = new LongAdder();
+        private final LongAdder stopped = new LongAdder();
+        private final LongAdder expanded = new LongAdder();
+        private final LongAdder scanned = new LongAdder();
+        private final LongAccumulator peakFrontier = new LongAccumulator(Math::max, 0);
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        void add(SearchTrace trace) {
+            searches.increment();
+            if (trace.reached()) {
+                reached.increment();
+            }
+            if (trace.stopReason() != null) {
+                stopped.increment();
+            }
+            expanded.add(trace.nodesExpanded());
+            scanned.add(trace.edgesScanned());
+            peakFrontier.accumulate(trace.peakFrontier());
+            latency.record(trace.nanos());
+        }
+
+        public long getSearches() {
+            return searches.sum();
+        }
+
+        public long getReached() {
+            return reached.sum();
+        }
+
+        // searches cut short by their SearchOptions
+        public long getStopped() {
+            return stopped.sum();
+        }
+
+        public long getNodesExpanded() {
+            return expanded.sum();
+        }
+
+        public long getEdgesScanned() {
+            return scanned.sum();
+        }
+
+        // largest frontier any single search had
+        public long getPeakFrontier() {
+            return peakFrontier.get();
+        }
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d searches (%d reached, %d stopped early), %d nodes expanded, %d edges scanned, peak frontier %d, %s",
+                getSearches(), getReached(), getStopped(), getNodesExpanded(), getEdgesScanned(), getPeakFrontier(), latency);
+        }
+    }
+
+    // log-linear histogram of nanosecond latencies: 4 buckets per power of two, so any value is
+    // reported within 25% of what it was, in a fixed 248 counters
+    public static final class LatencyHistogram {
+        private static final int BUCKETS = 248;
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        void record(long nanos) {
+            long v = Math.max(0, nanos);
+            counts.incrementAndGet(bucket(v));
+            total.add(v);
+            max.accumulate(v);
+        }
+
+        public long getCount() {
+            long count = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                count += counts.get(b);
+            }
+            return count;
+        }
+
+        public double getMeanNanos() {
+            long count = getCount();
+            return count == 0 ? 0 : (double) total.sum() / count;
+        }
+
+        public long getMaxNanos() {
+            return max.get();
+        }
+
+        // upper bound of the bucket holding the q-th quantile (0 < q <= 1), 0 if nothing was recorded
+        public long percentile(double q) {
+            if (!(q > 0 && q <= 1)) {
+                throw new IllegalArgumentException("Quantile must be in (0, 1]: " + q);
+            }
+            long count = getCount();
+            long rank = (long) Math.ceil(q * count);
+            long seen = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                seen += counts.get(b);
+                if (seen >= rank && seen > 0) {
+                    return Math.min(upperBound(b), getMaxNanos());
+                }
+            }
+            return 0;
+        }
+
+        // the raw bucket counts, see upperBound for what each bucket covers
+        public long[] getBucketCounts() {
+            long[] copy = new long[BUCKETS];
+            for (int b = 0; b < BUCKETS; b++) {
+                copy[b] = counts.get(b);
+            }
+            return copy;
+        }
+
+        static int bucket(long v) {
+            if (v < 4) {
+                return (int) v;
+            }
+            int log = 63 - Long.numberOfLeadingZeros(v);
+            int sub = (int) (v >>> (log - 2)) & 3;
+            return (log - 1) * 4 + sub;
+        }
+
+        // largest value that lands in bucket b
+        public static long upperBound(int b) {
+            if (b < 4) {
+                return b;
+            }
+            int log = b / 4 + 1;
+            long lower = (4L + b % 4) << (log - 2);
+            return lower + (1L << (log - 2)) - 1;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("p50 %.1f us, p99 %.1f us, max %.1f us", percentile(0.5) / 1e3,
+                percentile(0.99) / 1e3, getMaxNanos() / 1e3);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+// gets told about every GraphSearch call on a graph, see DotGraph.setSearchObserver
+// called on the searching thread right after the search, so it has to be thread-safe and quick.
+// SearchMetrics is the stock implementation.
+
+public interface SearchObserver {
+    void searchFinished(SearchTrace trace);
+}
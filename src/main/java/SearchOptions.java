@@ -0,0 +1,105 @@
+import java.time.Duration;
+import java.time.Instant;
+
+// limits for a single GraphSearch call
+//   graph.GraphSearch(src, dst, algo, SearchOptions.NONE.withTimeout(Duration.ofMillis(50)).withMaxExpanded(100_000))
+// a search that runs into a limit stops where it is and returns a partial path (the path to the
+// last node it expanded) with getStopReason() saying why. every search also stops when the
+// calling thread gets interrupted; the interrupt flag is left set.
+// immutable, the with* methods return a copy.
+
+public final class SearchOptions {
+    public enum StopReason {
+        DEADLINE,
+        MAX_EXPANDED,
+        CANCELLED,
+        INTERRUPTED
+    }
+
+    public static final SearchOptions NONE = new SearchOptions(null, null, Long.MAX_VALUE, null);
+
+    private final Duration timeout;
+    private final Instant deadline;
+    private final long maxExpanded;
+    private final CancellationToken token;
+
+    private SearchOptions(Duration timeout, Instant deadline, long maxExpanded, CancellationToken token) {
+        this.timeout = timeout;
+        this.deadline = deadline;
+        this.maxExpanded = maxExpanded;
+        this.token = token;
+    }
+
+    // stop once the search has been running this long
+    public SearchOptions withTimeout(Duration timeout) {
+        if (timeout.isNegative()) {
+            throw new IllegalArgumentException("Negative timeout: " + timeout);
+        }
+        return new SearchOptions(timeout, deadline, maxExpanded, token);
+    }
+
+    // stop at this point in time, e.g. the deadline of the request the search is serving
+    public SearchOptions withDeadline(Instant deadline) {
+        return new SearchOptions(timeout, deadline, maxExpanded, token);
+    }
+
+    // stop after expanding this many nodes. the parallel BFS counts whole levels, so it can go
+    // over by up to one level
+    public SearchOptions withMaxExpanded(long maxExpanded) {
+        if (maxExpanded < 1) {
+            throw new IllegalArgumentException("Max expanded nodes must be positive: " + maxExpanded);
+        }
+        return new SearchOptions(timeout, deadline, maxExpanded, token);
+    }
+
+    public SearchOptions withCancellation(CancellationToken token) {
+        return new SearchOptions(timeout, deadline, maxExpanded, token);
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public Instant getDeadline() {
+        return deadline;
+    }
+
+    public long getMaxExpanded() {
+        return maxExpanded;
+    }
+
+    public CancellationToken getCancellation() {
+        return token;
+    }
+
+    // the limits as of now, for a search that is about to start
+    SearchBudget start() {
+        long left = Long.MAX_VALUE;     // nanos until the search has to stop, MAX_VALUE for never
+        if (timeout != null) {
+            left = nanos(timeout);
+        }
+        if (deadline != null) {
+            left = Math.min(left, nanos(Duration.between(Instant.now(), deadline)));
+        }
+        // nanoTime() may wrap around, deadlines are only ever compared as differences (see SearchBudget)
+        return new SearchBudget(maxExpanded, left != Long.MAX_VALUE, System.nanoTime() + left, token);
+    }
+
+    // duration in nanos, clamped to [0, Long.MAX_VALUE]: a deadline centuries away is no deadline
+    private static long nanos(Duration d) {
+        if (d.isNegative()) {
+            return 0;
+        }
+        try {
+            return d.toNanos();
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SearchOptions{timeout=" + timeout + ", deadline=" + deadline + ", maxExpanded="
+            + (maxExpanded == Long.MAX_VALUE ? "none" : maxExpanded) + ", cancellable=" + (token != null) + "}";
+    }
+}
@@ -0,0 +1,40 @@
+// collects the counters of the searches run on this thread while GraphSearch is being observed
+// strategies hand their counters over when they're done (GraphSearchTemplate.releaseState, or
+// record() directly), and that's a thread-local read that finds nothing unless a probe is active.
+
+final class SearchProbe {
+    private static final ThreadLocal<SearchProbe> ACTIVE = new ThreadLocal<>();
+
+    private final SearchProbe outer;     // a search started from inside an observed one
+    long expanded;
+    long scanned;
+    int peakFrontier;
+
+    private SearchProbe(SearchProbe outer) {
+        this.outer = outer;
+    }
+
+    static SearchProbe start() {
+        SearchProbe probe = new SearchProbe(ACTIVE.get());
+        ACTIVE.set(probe);
+        return probe;
+    }
+
+    void stop() {
+        if (outer == null) {
+            ACTIVE.remove();
+        }
+        else {
+            ACTIVE.set(outer);
+        }
+    }
+
+    static void record(long expanded, long scanned, int peakFrontier) {
+        SearchProbe probe = ACTIVE.get();
+        if (probe != null) {
+            probe.expanded += expanded;
+            probe.scanned += scanned;
+            probe.peakFrontier = Math.max(probe.peakFrontier, peakFrontier);
+        }
+    }
+}
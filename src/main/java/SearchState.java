@@ -0,0 +1,251 @@
+import java.util.Arrays;
+
+// reusable primitive workspace for searches over a GraphSnapshot
+// holds a visited bitset, an int parent array (plus the edge slot each node was reached by)
+// and an int ring-buffer frontier.
+// reset() only clears the entries that were actually touched, so a search that
+// finds its target a few hops away costs the same on a 10-node graph and a 10M-node one.
+
+public final class SearchState implements VisitedView {
+    private long[] visited = new long[0];
+    private int[] parent = new int[0];
+    private int[] via = new int[0];         // edge slot parent -> v, -1 if the caller didn't say
+    private int[] depth = new int[0];
+
+    // ring buffer frontier, capacity is always a power of 2
+    private int[] ring = new int[16];
+    private int head;
+    private int size;
+
+    // every node marked visited since the last reset, so we can clear just those bits
+    private int[] touched = new int[16];
+    private int touchedCount;
+
+    // shared-prefix PathNodes, only created for nodes someone asked a path for
+    private PathNode[] cells;
+    private final IntList chain = new IntList();
+
+    // only used by weighted searches, allocated the first time one runs
+    private double[] cost;
+    private IndexedMinHeap heap;
+
+    // scratch list strategies fill in planNext
+    private final IntList planned = new IntList();
+
+    // search counters (see SearchProbe), plain fields: a state only ever belongs to one thread
+    private long expanded;
+    private long scanned;
+    private int peakFrontier;
+
+    public IntList planned() {
+        return planned;
+    }
+
+    // make sure the arrays can hold node ids 0..n-1
+    public void prepare(int n) {
+        if (parent.length < n) {
+            parent = new int[n];
+            via = new int[n];
+            depth = new int[n];
+            visited = new long[(n + 63) >>> 6];
+        }
+    }
+
+    @Override
+    public boolean isVisited(int v) {
+        return (visited[v >>> 6] & (1L << v)) != 0;
+    }
+
+    // marks v as visited and remembers how we got there (-1 for the start node)
+    public void visit(int v, int from) {
+        visit(v, from, -1);
+    }
+
+    // same, through edge slot edge (from -> v), which lets pathTo read the step's weight directly
+    public void visit(int v, int from, int edge) {
+        visited[v >>> 6] |= 1L << v;
+        parent[v] = from;
+        via[v] = edge;
+        depth[v] = from < 0 ? 0 : depth[from] + 1;
+        if (touchedCount == touched.length) {
+            touched = Arrays.copyOf(touched, touchedCount * 2);
+        }
+        touched[touchedCount++] = v;
+    }
+
+    // only meaningful for visited nodes
+    public int parent(int v) {
+        return parent[v];
+    }
+
+    // edge slot v was reached through, -1 if the caller didn't say. on a backward search (one that
+    // follows in-edges) it's the reverse slot of v -> parent(v), see GraphSnapshot.inWeight
+    public int via(int v) {
+        return via[v];
+    }
+
+    // re-parents an already visited node (weighted searches that found a cheaper way in)
+    public void setParent(int v, int from, int edge) {
+        parent[v] = from;
+        via[v] = edge;
+        depth[v] = from < 0 ? 0 : depth[from] + 1;
+    }
+
+    // best known cost to reach v, only meaningful for visited nodes of a weighted search
+    public double cost(int v) {
+        return cost[v];
+    }
+
+    public void setCost(int v, double c) {
+        cost[v] = c;
+    }
+
+    // priority queue for weighted searches, sized for the last prepare() / prepareWeighted()
+    public IndexedMinHeap heap() {
+        return heap;
+    }
+
+    // prepare() plus the cost array and heap that Dijkstra / A* need
+    public void prepareWeighted(int n) {
+        prepare(n);
+        if (cost == null || cost.length < n) {
+            cost = new double[Math.max(n, parent.length)];
+        }
+        if (heap == null) {
+            heap = new IndexedMinHeap();
+        }
+        heap.ensureCapacity(n);
+    }
+
+    // number of edges between the start and visited node v
+    public int depth(int v) {
+        return depth[v];
+    }
+
+    // persistent PathNode for the path to visited node v, built from the parent links on demand.
+    // cells are memoized, so asking for the path of a child whose parent already has one is O(1)
+    public PathNode pathTo(int v, GraphSnapshot graph) {
+        if (cells == null || cells.length < parent.length) {
+            cells = new PathNode[parent.length];
+        }
+        // climb until we find a node that already has a cell (or run off the start)
+        chain.clear();
+        int at = v;
+        while (at >= 0 && cells[at] == null) {
+            chain.add(at);
+            at = parent[at];
+        }
+        PathNode prefix = at >= 0 ? cells[at] : null;
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            int node = chain.get(i);
+            prefix = prefix == null
+                ? new PathNode(graph.label(node))
+                : new PathNode(graph.label(node), prefix, stepWeight(node, graph));
+            cells[node] = prefix;
+        }
+        return prefix;
+    }
+
+    // weight of the edge v was reached by, only scans the parent's out-edges if nobody said which
+    private double stepWeight(int v, GraphSnapshot graph) {
+        return via[v] >= 0 ? graph.weight(via[v]) : graph.weight(parent[v], v);
+    }
+
+    // number of nodes visited so far
+    public int visitedCount() {
+        return touchedCount;
+    }
+
+    public void addLast(int v) {
+        if (size == ring.length) grow();
+        ring[(head + size) & (ring.length - 1)] = v;
+        if (++size > peakFrontier) peakFrontier = size;
+    }
+
+    public void addFirst(int v) {
+        if (size == ring.length) grow();
+        head = (head - 1) & (ring.length - 1);
+        ring[head] = v;
+        if (++size > peakFrontier) peakFrontier = size;
+    }
+
+    public int pollFirst() {
+        int v = ring[head];
+        head = (head + 1) & (ring.length - 1);
+        size--;
+        return v;
+    }
+
+    public int pollLast() {
+        size--;
+        return ring[(head + size) & (ring.length - 1)];
+    }
+
+    // i-th frontier entry counting from the front
+    public int frontierAt(int i) {
+        return ring[(head + i) & (ring.length - 1)];
+    }
+
+    public int frontierSize() {
+        return size;
+    }
+
+    public boolean isFrontierEmpty() {
+        return size == 0;
+    }
+
+    // a node got expanded, looking at this many edges
+    public void countExpansion(int edges) {
+        expanded++;
+        scanned += edges;
+    }
+
+    // for frontiers that don't live in the ring buffer (the weighted searches' heap)
+    public void notePeakFrontier(int frontierSize) {
+        if (frontierSize > peakFrontier) peakFrontier = frontierSize;
+    }
+
+    public long expandedCount() {
+        return expanded;
+    }
+
+    public long scannedCount() {
+        return scanned;
+    }
+
+    public int peakFrontier() {
+        return peakFrontier;
+    }
+
+    // forget everything from the last search, O(nodes touched) not O(graph size)
+    public void reset() {
+        // every set bit belongs to a touched node, so zeroing whole words is safe
+        for (int i = 0; i < touchedCount; i++) {
+            visited[touched[i] >>> 6] = 0;
+        }
+        if (cells != null) {
+            for (int i = 0; i < touchedCount; i++) {
+                cells[touched[i]] = null;
+            }
+        }
+        touchedCount = 0;
+        head = 0;
+        size = 0;
+        expanded = 0;
+        scanned = 0;
+        peakFrontier = 0;
+        planned.clear();
+        if (heap != null) {
+            heap.clear();
+        }
+    }
+
+    private void grow() {
+        int[] bigger = new int[ring.length * 2];
+        for (int i = 0; i < size; i++) {
+            bigger[i] = ring[(head + i) & (ring.length - 1)];
+        }
+        ring = bigger;
+        head = 0;
+    }
+}
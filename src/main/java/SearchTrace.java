@@ -0,0 +1,9 @@
+// what one GraphSearch call did, handed to the graph's SearchObserver
+// nodesExpanded / edgesScanned / peakFrontier are 0 when the answer came from the path cache or
+// the reachability index. pathLength is in nodes, like Path.length(). stopReason is null unless the
+// search ran into one of its SearchOptions limits.
+
+public record SearchTrace(DotGraph.Algorithm algorithm, String src, String dst, long nodesExpanded,
+                          long edgesScanned, int peakFrontier, int pathLength, boolean reached,
+                          SearchOptions.StopReason stopReason, long nanos) {
+}
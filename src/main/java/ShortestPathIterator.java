@@ -0,0 +1,196 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+// lazy Yen's algorithm: the loopless src -> dst paths of a snapshot, cheapest first (see DotGraph.shortestPaths)
+// the first path is a single Dijkstra. each later one runs a Dijkstra from every "spur" node of the
+// path before it, with the nodes in front of the spur blocked and the spur's edges that earlier paths
+// with the same prefix took banned. that only happens when someone asks for the next path, so
+// stream.limit(k) never pays for path k+1. equal costs go to fewer hops, then to the smaller id
+// sequence, so a given snapshot always gives the same order.
+// memory is one SearchState plus the paths handed out so far and their pending spur candidates.
+
+final class ShortestPathIterator implements Iterator<Path> {
+    private final GraphSnapshot snapshot;
+    private final int src;
+    private final int dst;
+    private final SearchState state = new SearchState();
+    private final long[] blocked;                       // root nodes a spur search must not enter
+    private final IntList banned = new IntList();       // spur node's next hops that earlier paths took
+
+    private final List<Route> found = new ArrayList<>();
+    private final PriorityQueue<Route> candidates = new PriorityQueue<>();
+    private final Set<Route> known = new HashSet<>();   // everything in found or candidates
+    private Route next;
+    private boolean started;
+    private boolean done;
+
+    // dst < 0 (not in the graph) just means there are no paths
+    ShortestPathIterator(GraphSnapshot snapshot, int src, int dst) {
+        this.snapshot = snapshot;
+        this.src = src;
+        this.dst = dst;
+        this.blocked = new long[(snapshot.size() + 63) >>> 6];
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !done) {
+            if (!started) {
+                started = true;
+                if (dst >= 0) {
+                    offer(new int[0], src);
+                }
+            }
+            else {
+                addSpurs(found.get(found.size() - 1).nodes);
+            }
+            next = candidates.poll();
+            done = next == null;
+        }
+        return next != null;
+    }
+
+    @Override
+    public Path next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Route route = next;
+        next = null;
+        found.add(route);
+        return route.toPath(snapshot);
+    }
+
+    // spur off every node of prev but the last
+    private void addSpurs(int[] prev) {
+        for (int i = 0; i < prev.length - 1; i++) {
+            banned.clear();
+            for (Route r : found) {
+                if (r.nodes.length > i + 1 && Arrays.equals(r.nodes, 0, i + 1, prev, 0, i + 1)) {
+                    banned.add(r.nodes[i + 1]);
+                }
+            }
+            for (int j = 0; j < i; j++) {
+                blocked[prev[j] >>> 6] |= 1L << prev[j];
+            }
+            offer(Arrays.copyOf(prev, i), prev[i]);
+            for (int j = 0; j < i; j++) {
+                blocked[prev[j] >>> 6] &= ~(1L << prev[j]);
+            }
+        }
+    }
+
+    // root + the cheapest spur -> dst path around the blocked nodes / banned edges, if there is one
+    private void offer(int[] root, int spur) {
+        int[] spurPath = dijkstra(spur);
+        if (spurPath == null) {
+            return;
+        }
+        int[] nodes = Arrays.copyOf(root, root.length + spurPath.length);
+        System.arraycopy(spurPath, 0, nodes, root.length, spurPath.length);
+        Route route = new Route(nodes, snapshot);
+        if (known.add(route)) {
+            candidates.add(route);
+        }
+    }
+
+    private int[] dijkstra(int from) {
+        state.prepareWeighted(snapshot.size());
+        IndexedMinHeap open = state.heap();
+        try {
+            state.visit(from, -1);
+            state.setCost(from, 0);
+            open.insert(from, 0);
+            while (!open.isEmpty()) {
+                int u = open.poll();
+                if (u == dst) {
+                    int[] path = new int[state.depth(u) + 1];
+                    for (int at = u, i = path.length - 1; at >= 0; at = state.parent(at), i--) {
+                        path[i] = at;
+                    }
+                    return path;
+                }
+                double base = state.cost(u);
+                for (int e = snapshot.firstEdge(u); e < snapshot.endEdge(u); e++) {
+                    int v = snapshot.target(e);
+                    if ((blocked[v >>> 6] & (1L << v)) != 0 || (u == from && isBanned(v))) {
+                        continue;
+                    }
+                    double g = base + snapshot.weight(e);
+                    if (!state.isVisited(v)) {
+                        state.visit(v, u, e);
+                        state.setCost(v, g);
+                        open.insert(v, g);
+                    }
+                    else if (g < state.cost(v) && open.contains(v)) {
+                        state.setParent(v, u, e);
+                        state.setCost(v, g);
+                        open.decreaseKey(v, g);
+                    }
+                }
+            }
+            return null;
+        } finally {
+            state.reset();
+        }
+    }
+
+    private boolean isBanned(int v) {
+        for (int i = 0; i < banned.size(); i++) {
+            if (banned.get(i) == v) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // a loopless path as snapshot ids, ordered by cost, then hops, then ids
+    private static final class Route implements Comparable<Route> {
+        final int[] nodes;
+        final double cost;
+
+        Route(int[] nodes, GraphSnapshot snapshot) {
+            this.nodes = nodes;
+            double c = 0;
+            for (int i = 1; i < nodes.length; i++) {
+                c += snapshot.weight(nodes[i - 1], nodes[i]);
+            }
+            this.cost = c;
+        }
+
+        Path toPath(GraphSnapshot snapshot) {
+            PathNode last = new PathNode(snapshot.label(nodes[0]));
+            for (int i = 1; i < nodes.length; i++) {
+                last = last.append(snapshot.label(nodes[i]), snapshot.weight(nodes[i - 1], nodes[i]));
+            }
+            Path p = new Path(last);
+            p.setDestinationReached();
+            return p;
+        }
+
+        @Override
+        public int compareTo(Route o) {
+            int c = Double.compare(cost, o.cost);
+            if (c == 0) {
+                c = Integer.compare(nodes.length, o.nodes.length);
+            }
+            return c != 0 ? c : Arrays.compare(nodes, o.nodes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Route && Arrays.equals(nodes, ((Route) o).nodes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(nodes);
+        }
+    }
+}
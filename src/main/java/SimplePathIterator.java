@@ -0,0 +1,132 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// every simple src -> dst path with at most maxDepth edges, depth first in edge order
+// (see DotGraph.simplePaths). the DFS keeps just the current path and an edge cursor per level,
+// and it's resumed where it left off for each next path, so nothing is built ahead of the caller.
+// a hop-distance-to-dst table (one reverse BFS, made on first use) prunes branches that can't reach
+// dst within the depth that's left, instead of exploring them to the limit.
+
+final class SimplePathIterator implements Iterator<Path> {
+    private final GraphSnapshot snapshot;
+    private final int src;
+    private final int dst;
+    private final int maxDepth;
+
+    private int[] stack;        // the current path
+    private int[] cursor;       // next edge slot to try, per level
+    private long[] onPath;
+    private int[] distance;     // hops to dst, -1 if more than maxDepth / unreachable
+    private int depth = -1;     // index of the top of the stack
+    private Path next;
+    private boolean started;
+
+    // dst < 0 (not in the graph) just means there are no paths
+    SimplePathIterator(GraphSnapshot snapshot, int src, int dst, int maxDepth) {
+        this.snapshot = snapshot;
+        this.src = src;
+        this.dst = dst;
+        // a simple path can't have more edges than that anyway
+        this.maxDepth = Math.min(maxDepth, snapshot.size() - 1);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            next = advance();
+        }
+        return next != null;
+    }
+
+    @Override
+    public Path next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Path p = next;
+        next = null;
+        return p;
+    }
+
+    private Path advance() {
+        if (!started) {
+            started = true;
+            if (dst < 0) {
+                return null;
+            }
+            distance = distancesToDst();
+            if (distance[src] < 0) {
+                return null;
+            }
+            stack = new int[maxDepth + 1];
+            cursor = new int[maxDepth + 1];
+            onPath = new long[(snapshot.size() + 63) >>> 6];
+            push(src);
+            if (src == dst) {
+                return toPath();
+            }
+        }
+        while (depth >= 0) {
+            int u = stack[depth];
+            // paths end at dst, and the one ending here was already handed out
+            if (u == dst || cursor[depth] == snapshot.endEdge(u)) {
+                pop();
+                continue;
+            }
+            int v = snapshot.target(cursor[depth]++);
+            if ((onPath[v >>> 6] & (1L << v)) != 0 || distance[v] < 0 || depth + 1 + distance[v] > maxDepth) {
+                continue;
+            }
+            push(v);
+            if (v == dst) {
+                return toPath();
+            }
+        }
+        return null;
+    }
+
+    private void push(int v) {
+        stack[++depth] = v;
+        cursor[depth] = snapshot.firstEdge(v);
+        onPath[v >>> 6] |= 1L << v;
+    }
+
+    private void pop() {
+        int v = stack[depth--];
+        onPath[v >>> 6] &= ~(1L << v);
+    }
+
+    private Path toPath() {
+        PathNode last = new PathNode(snapshot.label(stack[0]));
+        for (int i = 1; i <= depth; i++) {
+            last = last.append(snapshot.label(stack[i]), snapshot.weight(stack[i - 1], stack[i]));
+        }
+        Path p = new Path(last);
+        p.setDestinationReached();
+        return p;
+    }
+
+    // BFS backwards from dst, maxDepth levels deep
+    private int[] distancesToDst() {
+        int[] dist = new int[snapshot.size()];
+        Arrays.fill(dist, -1);
+        dist[dst] = 0;
+        IntList queue = new IntList();
+        queue.add(dst);
+        for (int head = 0; head < queue.size(); head++) {
+            int v = queue.get(head);
+            if (dist[v] == maxDepth) {
+                continue;
+            }
+            for (int e = snapshot.firstInEdge(v); e < snapshot.endInEdge(v); e++) {
+                int u = snapshot.source(e);
+                if (dist[u] < 0) {
+                    dist[u] = dist[v] + 1;
+                    queue.add(u);
+                }
+            }
+        }
+        return dist;
+    }
+}
@@ -0,0 +1,402 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// binary on-disk format for GraphSnapshot, made to be memory-mapped and used as is
+//
+// little-endian, every section starts on an 8 byte boundary:
+//   header      magic "DOTS", format version, flags (1 = weighted), node count n, edge count m,
+//               label byte count, label hash table capacity
+//   offsets     int[n + 1]   forward CSR
+//   targets     int[m]
+//   revOffsets  int[n + 1]   reverse CSR
+//   sources     int[m]
+//   weights     double[m]    only if weighted
+//   revWeights  double[m]    only if weighted, parallel to sources
+//   labelStarts int[n + 1]   where each label starts in the label bytes
+//   labelHash   int[cap]     open addressing table of node ids (-1 = empty), keyed by String.hashCode
+//   labelBytes  byte[]       upper-cased labels, UTF-8, back to back
+//
+// loading maps every section straight into the snapshot's buffers, so nothing is copied onto the
+// heap and startup cost doesn't grow with the graph. bump FORMAT_VERSION on any layout change.
+
+final class SnapshotFile {
+    static final int MAGIC = 0x444F5453;     // "DOTS"
+    static final int FORMAT_VERSION = 2;
+    private static final int FLAG_WEIGHTED = 1;
+    private static final int HEADER_SIZE = 32;
+
+    private SnapshotFile() {
+    }
+
+    // a graph to write out: upper-cased labels by node id, and edges that can be replayed as often
+    // as the writer needs, always in the same order and grouped by source (sources never go down)
+    interface Source {
+        int size();
+
+        String label(int v);
+
+        boolean isWeighted();
+
+        void edges(EdgeVisitor visitor) throws IOException;
+    }
+
+    interface EdgeVisitor {
+        void edge(int from, int to, double weight) throws IOException;
+    }
+
+    static void write(GraphSnapshot g, Path file) throws IOException {
+        write(new Source() {
+            @Override
+            public int size() {
+                return g.size();
+            }
+
+            @Override
+            public String label(int v) {
+                return g.label(v);
+            }
+
+            @Override
+            public boolean isWeighted() {
+                return g.isWeighted();
+            }
+
+            @Override
+            public void edges(EdgeVisitor visitor) throws IOException {
+                for (int u = 0; u < g.size(); u++) {
+                    for (int e = g.firstEdge(u); e < g.endEdge(u); e++) {
+                        visitor.edge(u, g.target(e), g.weight(e));
+                    }
+                }
+            }
+        }, file);
+    }
+
+    // streams the graph into the file in two passes over its edges: one to count degrees, one to
+    // write targets (and weights) in order while scattering the sources (and their weights) into the mapped reverse
+    // index. memory use is a few ints per node, whatever the number of edges.
+    static void write(Source g, Path file) throws IOException {
+        int n = g.size();
+        boolean weighted = g.isWeighted();
+
+        long labelBytes = 0;
+        int capacity = hashCapacity(n);
+        int[] table = new int[capacity];
+        Arrays.fill(table, -1);
+        for (int v = 0; v < n; v++) {
+            String label = g.label(v);
+            labelBytes += label.getBytes(StandardCharsets.UTF_8).length;
+            int slot = slot(label.hashCode(), capacity);
+            while (table[slot] >= 0) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            table[slot] = v;
+        }
+        if (labelBytes > Integer.MAX_VALUE) {
+            throw new IOException("Labels too large for a snapshot file: " + labelBytes + " bytes");
+        }
+
+        // pass 1: degrees, turned into the forward and reverse offsets
+        int[] offsets = new int[n + 1];
+        int[] revOffsets = new int[n + 1];
+        long[] count = new long[1];
+        int[] lastSource = new int[1];
+        g.edges((u, v, w) -> {
+            if (u < lastSource[0] || u >= n || v < 0 || v >= n) {
+                throw new IOException("Edges must be grouped by source and between known nodes: " + u + " -> " + v);
+            }
+            lastSource[0] = u;
+            offsets[u + 1]++;
+            revOffsets[v + 1]++;
+            count[0]++;
+        });
+        if (count[0] > Integer.MAX_VALUE / Double.BYTES) {
+            throw new IOException("Too many edges for a snapshot file: " + count[0]);
+        }
+        int m = (int) count[0];
+        for (int v = 0; v < n; v++) {
+            offsets[v + 1] += offsets[v];
+            revOffsets[v + 1] += revOffsets[v];
+        }
+
+        long targetsAt = align(HEADER_SIZE + (n + 1L) * Integer.BYTES);
+        long revOffsetsAt = align(targetsAt + (long) m * Integer.BYTES);
+        long sourcesAt = align(revOffsetsAt + (n + 1L) * Integer.BYTES);
+        long weightsAt = align(sourcesAt + (long) m * Integer.BYTES);
+        long revWeightsAt = align(weightsAt + (long) m * Double.BYTES);
+        long labelStartsAt = weighted ? align(revWeightsAt + (long) m * Double.BYTES) : weightsAt;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel, 0);
+            out.putInt(MAGIC);
+            out.putInt(FORMAT_VERSION);
+            out.putInt(weighted ? FLAG_WEIGHTED : 0);
+            out.putInt(n);
+            out.putInt(m);
+            out.putInt((int) labelBytes);
+            out.putInt(capacity);
+            out.align();
+            for (int offset : offsets) {
+                out.putInt(offset);
+            }
+            out.flush();
+
+            // pass 2: targets and weights go out in order, sources land wherever their target says
+            Output targets = new Output(channel, targetsAt);
+            Output weights = weighted ? new Output(channel, weightsAt) : null;
+            MappedByteBuffer sources = channel.map(FileChannel.MapMode.READ_WRITE, sourcesAt, (long) m * Integer.BYTES);
+            sources.order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer revWeights = weighted ? channel.map(FileChannel.MapMode.READ_WRITE, revWeightsAt,
+                (long) m * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN) : null;
+            int[] fill = Arrays.copyOf(revOffsets, n);
+            int[] written = new int[1];
+            g.edges((u, v, w) -> {
+                if (written[0] == m) {
+                    throw new IOException("Edges changed between passes");
+                }
+                written[0]++;
+                targets.putInt(v);
+                if (weights != null) {
+                    weights.putDouble(w);
+                }
+                int slot = fill[v]++;
+                sources.putInt(slot * Integer.BYTES, u);
+                if (revWeights != null) {
+                    revWeights.putDouble(slot * Double.BYTES, w);
+                }
+            });
+            if (written[0] != m) {
+                throw new IOException("Edges changed between passes");
+            }
+            targets.flush();
+            if (weights != null) {
+                weights.flush();
+            }
+
+            out = new Output(channel, revOffsetsAt);
+            for (int offset : revOffsets) {
+                out.putInt(offset);
+            }
+            out.flush();
+
+            out = new Output(channel, labelStartsAt);
+            int start = 0;
+            for (int v = 0; v <= n; v++) {
+                out.putInt(start);
+                if (v < n) {
+                    start += g.label(v).getBytes(StandardCharsets.UTF_8).length;
+                }
+            }
+            out.align();
+            for (int slot : table) {
+                out.putInt(slot);
+            }
+            out.align();
+            for (int v = 0; v < n; v++) {
+                out.putBytes(g.label(v).getBytes(StandardCharsets.UTF_8));
+            }
+            out.flush();
+        }
+    }
+
+    static GraphSnapshot read(Path file, long version) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // keep reading
+            }
+            if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+                throw new IOException("Not a graph snapshot file: " + file);
+            }
+            int format = header.getInt(4);
+            if (format != FORMAT_VERSION) {
+                throw new IOException("Unsupported graph snapshot format version " + format + " in " + file);
+            }
+            boolean weighted = (header.getInt(8) & FLAG_WEIGHTED) != 0;
+            int n = header.getInt(12);
+            int m = header.getInt(16);
+            int labelBytes = header.getInt(20);
+            int capacity = header.getInt(24);
+            if (n < 0 || m < 0 || labelBytes < 0 || Integer.bitCount(capacity) != 1) {
+                throw new IOException("Corrupt graph snapshot header in " + file);
+            }
+
+            Sections in = new Sections(channel, HEADER_SIZE);
+            IntBuffer offsets = in.ints(n + 1L);
+            IntBuffer targets = in.ints(m);
+            IntBuffer revOffsets = in.ints(n + 1L);
+            IntBuffer sources = in.ints(m);
+            DoubleBuffer weights = weighted ? in.doubles(m) : null;
+            DoubleBuffer revWeights = weighted ? in.doubles(m) : null;
+            IntBuffer labelStarts = in.ints(n + 1L);
+            IntBuffer table = in.ints(capacity);
+            ByteBuffer bytes = in.bytes(labelBytes);
+            if (in.end != channel.size()) {
+                throw new IOException("Truncated or corrupt graph snapshot file: " + file);
+            }
+            return new GraphSnapshot(version, new Labels(labelStarts, table, bytes),
+                offsets, targets, weights, revOffsets, sources, revWeights);
+        }
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    private static int hashCapacity(int n) {
+        // power of two, at most half full
+        return Integer.highestOneBit(Math.max(1, n) * 2 - 1) << 1;
+    }
+
+    private static int slot(int hash, int capacity) {
+        return (hash ^ (hash >>> 16)) & (capacity - 1);
+    }
+
+    // label dictionary of a mapped snapshot
+    static final class Labels {
+        private final IntBuffer starts;
+        private final IntBuffer table;
+        private final ByteBuffer bytes;
+
+        Labels(IntBuffer starts, IntBuffer table, ByteBuffer bytes) {
+            this.starts = starts;
+            this.table = table;
+            this.bytes = bytes;
+        }
+
+        String label(int v) {
+            int start = starts.get(v);
+            byte[] name = new byte[starts.get(v + 1) - start];
+            bytes.get(start, name);
+            return new String(name, StandardCharsets.UTF_8);
+        }
+
+        // id of an upper-cased label, -1 if it isn't there
+        int id(String key) {
+            int capacity = table.limit();
+            byte[] wanted = key.getBytes(StandardCharsets.UTF_8);
+            for (int slot = slot(key.hashCode(), capacity); ; slot = (slot + 1) & (capacity - 1)) {
+                int v = table.get(slot);
+                if (v < 0) {
+                    return -1;
+                }
+                if (matches(v, wanted)) {
+                    return v;
+                }
+            }
+        }
+
+        private boolean matches(int v, byte[] wanted) {
+            int start = starts.get(v);
+            if (starts.get(v + 1) - start != wanted.length) {
+                return false;
+            }
+            for (int i = 0; i < wanted.length; i++) {
+                if (bytes.get(start + i) != wanted[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // maps consecutive 8-byte aligned sections of the file
+    private static final class Sections {
+        private final FileChannel channel;
+        private long position;
+        long end;       // end of the last section, before padding
+
+        Sections(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        IntBuffer ints(long count) throws IOException {
+            return map(count * Integer.BYTES).asIntBuffer();
+        }
+
+        DoubleBuffer doubles(long count) throws IOException {
+            return map(count * Double.BYTES).asDoubleBuffer();
+        }
+
+        ByteBuffer bytes(long count) throws IOException {
+            return map(count);
+        }
+
+        private ByteBuffer map(long length) throws IOException {
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot section too large to map: " + length + " bytes");
+            }
+            if (position + length > channel.size()) {
+                throw new IOException("Truncated graph snapshot file");
+            }
+            MappedByteBuffer section = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            end = position + length;
+            position = (end + 7) & ~7L;
+            return section.order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    // buffered little-endian writer from some position of the file on, keeps track of alignment
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        private long written;       // file position the buffer starts at
+
+        Output(FileChannel channel, long position) {
+            this.channel = channel;
+            this.written = position;
+        }
+
+        void putInt(int value) throws IOException {
+            room(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putDouble(double value) throws IOException {
+            room(Double.BYTES);
+            buffer.putDouble(value);
+        }
+
+        void putBytes(byte[] value) throws IOException {
+            for (int at = 0; at < value.length; ) {
+                room(1);
+                int len = Math.min(buffer.remaining(), value.length - at);
+                buffer.put(value, at, len);
+                at += len;
+            }
+        }
+
+        // pads with zeros up to the next multiple of 8
+        void align() throws IOException {
+            while (((written + buffer.position()) & 7) != 0) {
+                room(1);
+                buffer.put((byte) 0);
+            }
+        }
+
+        private void room(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer, written);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+import java.util.Arrays;
+
+// interning table for node labels
+// every distinct label (case insensitive) gets one dense int id, one canonical upper-cased String
+// and the spelling it was first seen with (for display). lookups hash and compare the label
+// char by char without upper-casing it first, so looking up a known label allocates nothing.
+
+final class SymbolTable {
+    private String[] keys = new String[16];      // canonical (upper-cased) label per id
+    private String[] display = new String[16];   // first-seen spelling per id
+    private int[] hashes = new int[16];          // hash of each key, saves recomputing on resize
+    private int size;
+
+    // open addressing, id + 1 per slot (0 = empty), never more than half full
+    private int[] table = new int[32];
+
+    // canonical form of a label: upper-cased char by char. returns the label itself if it already is
+    static String upper(String label) {
+        for (int i = 0; i < label.length(); i++) {
+            char c = label.charAt(i);
+            if (Character.toUpperCase(c) != c) {
+                char[] chars = label.toCharArray();
+                for (int j = i; j < chars.length; j++) {
+                    chars[j] = Character.toUpperCase(chars[j]);
+                }
+                return new String(chars);
+            }
+        }
+        return label;
+    }
+
+    // same value as upper(label).hashCode(), without building the string
+    static int hash(String label) {
+        int h = 0;
+        for (int i = 0; i < label.length(); i++) {
+            h = 31 * h + Character.toUpperCase(label.charAt(i));
+        }
+        return h;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // id of a label (any case), -1 if it was never interned
+    int id(String label) {
+        int h = hash(label);
+        int mask = table.length - 1;
+        for (int slot = spread(h) & mask; ; slot = (slot + 1) & mask) {
+            int entry = table[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            int id = entry - 1;
+            if (hashes[id] == h && matches(keys[id], label)) {
+                return id;
+            }
+        }
+    }
+
+    // id of a label, adding it if it's new
+    int intern(String label) {
+        int id = id(label);
+        if (id >= 0) {
+            return id;
+        }
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            display = Arrays.copyOf(display, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        id = size++;
+        keys[id] = upper(label);
+        display[id] = label;
+        hashes[id] = hash(label);
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        else {
+            place(id);
+        }
+        return id;
+    }
+
+    // canonical upper-cased label
+    String key(int id) {
+        return keys[id];
+    }
+
+    // the label as it was first written
+    String display(int id) {
+        return display[id];
+    }
+
+    private static boolean matches(String key, String label) {
+        if (key.length() != label.length()) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (Character.toUpperCase(label.charAt(i)) != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        for (int id = 0; id < size; id++) {
+            place(id);
+        }
+    }
+
+    private void place(int id) {
+        int mask = table.length - 1;
+        int slot = spread(hashes[id]) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = id + 1;
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+}
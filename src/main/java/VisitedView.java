@@ -0,0 +1,7 @@
+// read-only, constant time view of which nodes a running search has already reached
+// (either expanded or still waiting in the frontier). backed by the search's own state, no copying.
+
+@FunctionalInterface
+public interface VisitedView {
+    boolean isVisited(int node);
+}
@@ -0,0 +1,141 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// aggregate outcome of a batch of RandomWalkEngine walks
+// every walk ends exactly one way: hit dst, got stuck, ran out of steps, or ran out of time.
+// lengths are in steps (edges walked, step backs included). visit counts include each walk's start.
+
+public final class WalkStats {
+    private final GraphSnapshot graph;
+    private final long[] visits;
+    private long totalVisits;
+    private long walks;
+    private long hits;
+    private long stuck;
+    private long outOfSteps;
+    private long outOfTime;
+    private long hitSteps;
+    private long[] hitLengths = new long[16];     // hitLengths[k]: walks that hit dst after k steps
+
+    WalkStats(GraphSnapshot graph) {
+        this.graph = graph;
+        this.visits = new long[graph.size()];
+    }
+
+    void visit(int node) {
+        visits[node]++;
+        totalVisits++;
+    }
+
+    void hit(int steps) {
+        walks++;
+        hits++;
+        hitSteps += steps;
+        if (steps >= hitLengths.length) {
+            hitLengths = Arrays.copyOf(hitLengths, Math.max(steps + 1, hitLengths.length * 2));
+        }
+        hitLengths[steps]++;
+    }
+
+    void stuck() {
+        walks++;
+        stuck++;
+    }
+
+    void outOfSteps() {
+        walks++;
+        outOfSteps++;
+    }
+
+    void outOfTime() {
+        walks++;
+        outOfTime++;
+    }
+
+    void merge(WalkStats other) {
+        for (int v = 0; v < visits.length; v++) {
+            visits[v] += other.visits[v];
+        }
+        totalVisits += other.totalVisits;
+        walks += other.walks;
+        hits += other.hits;
+        stuck += other.stuck;
+        outOfSteps += other.outOfSteps;
+        outOfTime += other.outOfTime;
+        hitSteps += other.hitSteps;
+        if (other.hitLengths.length > hitLengths.length) {
+            hitLengths = Arrays.copyOf(hitLengths, other.hitLengths.length);
+        }
+        for (int k = 0; k < other.hitLengths.length; k++) {
+            hitLengths[k] += other.hitLengths[k];
+        }
+    }
+
+    public long getWalks() {
+        return walks;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public double getHitRate() {
+        return walks == 0 ? 0 : (double) hits / walks;
+    }
+
+    // walks that ended on a node with nowhere (new) to go
+    public long getStuck() {
+        return stuck;
+    }
+
+    public long getOutOfSteps() {
+        return outOfSteps;
+    }
+
+    public long getOutOfTime() {
+        return outOfTime;
+    }
+
+    // mean steps of the walks that hit dst, NaN if none did
+    public double getMeanHitLength() {
+        return hits == 0 ? Double.NaN : (double) hitSteps / hits;
+    }
+
+    // index k: how many walks hit dst after exactly k steps (trailing zeros trimmed)
+    public long[] getHitLengthHistogram() {
+        int n = hitLengths.length;
+        while (n > 0 && hitLengths[n - 1] == 0) {
+            n--;
+        }
+        return Arrays.copyOf(hitLengths, n);
+    }
+
+    // times any walk was on the node (0 for unknown labels)
+    public long getVisits(String label) {
+        int id = graph.id(label);
+        return id < 0 ? 0 : visits[id];
+    }
+
+    // share of all visits that went to the node
+    public double getVisitFrequency(String label) {
+        return totalVisits == 0 ? 0 : (double) getVisits(label) / totalVisits;
+    }
+
+    // visit counts of every node that was visited at all, in node id order
+    public Map<String, Long> getVisitCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int v = 0; v < visits.length; v++) {
+            if (visits[v] > 0) {
+                counts.put(graph.label(v), visits[v]);
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d walks: %d hit (%.1f%%, mean %.1f steps), %d stuck, %d out of steps, %d out of time",
+            walks, hits, 100 * getHitRate(), getMeanHitLength(), stuck, outOfSteps, outOfTime);
+    }
+}
@@ -0,0 +1,103 @@
+// Dijkstra / A* over edge weights, using the primitive IndexedMinHeap (with decrease-key)
+// instead of a PriorityQueue of boxed entries. with SearchHeuristic.NONE this is plain Dijkstra.
+// the returned path is a cheapest one and Path.getCost() is its total weight.
+
+public class WeightedGraphSearch extends GraphSearchTemplate {
+    private final SearchHeuristic heuristic;
+
+    public WeightedGraphSearch() {
+        this(SearchHeuristic.NONE);
+    }
+
+    public WeightedGraphSearch(SearchHeuristic heuristic) {
+        this.heuristic = heuristic;
+    }
+
+    public SearchHeuristic getHeuristic() {
+        return heuristic;
+    }
+
+    // no randomness or threads involved, so as long as the heuristic is a pure function the result is fixed
+    @Override
+    protected boolean isDeterministic() {
+        return true;
+    }
+
+    @Override
+    public Path search(DotGraph graph, String src, String dst, SearchOptions options) {
+        SearchBudget budget = options.start();
+        GraphSnapshot snapshot = graph.freeze();
+        int start = startNode(snapshot, src);
+        int target = snapshot.id(dst);
+        String targetLabel = target < 0 ? null : snapshot.label(target);
+        boolean useHeuristic = heuristic != SearchHeuristic.NONE && target >= 0;
+
+        SearchState state = acquireState();
+        state.prepareWeighted(snapshot.size());
+        IndexedMinHeap open = state.heap();
+        try {
+            state.visit(start, -1);
+            state.setCost(start, 0);
+            open.insert(start, estimate(snapshot, start, targetLabel, useHeuristic));
+            int current = start;
+
+            while (!open.isEmpty()) {
+                SearchOptions.StopReason stopped = budget.check(state.expandedCount());
+                if (stopped != null) {
+                    Path partial = buildPath(state, snapshot, current);
+                    partial.setStopReason(stopped);
+                    return partial;
+                }
+                current = open.poll();
+                if (current == target) {
+                    Path p = buildPath(state, snapshot, current);
+                    p.setDestinationReached();
+                    return p;
+                }
+
+                state.countExpansion(snapshot.outDegree(current));
+                double base = state.cost(current);
+                for (int e = snapshot.firstEdge(current); e < snapshot.endEdge(current); e++) {
+                    int v = snapshot.target(e);
+                    double g = base + snapshot.weight(e);
+                    if (!state.isVisited(v)) {
+                        state.visit(v, current, e);
+                        state.setCost(v, g);
+                        open.insert(v, g + estimate(snapshot, v, targetLabel, useHeuristic));
+                    }
+                    else if (g < state.cost(v)) {
+                        // found a cheaper way in. a closed node only gets reopened if the heuristic is inconsistent
+                        state.setParent(v, current, e);
+                        state.setCost(v, g);
+                        double key = g + estimate(snapshot, v, targetLabel, useHeuristic);
+                        if (open.contains(v)) {
+                            open.decreaseKey(v, key);
+                        }
+                        else {
+                            open.insert(v, key);
+                        }
+                    }
+                }
+                state.notePeakFrontier(open.size());
+            }
+            return buildPath(state, snapshot, current);
+        } finally {
+            releaseState(state);
+        }
+    }
+
+    private double estimate(GraphSnapshot snapshot, int node, String targetLabel, boolean useHeuristic) {
+        return useHeuristic ? heuristic.estimate(snapshot.label(node), targetLabel) : 0;
+    }
+
+    // only used if someone drives this through the plain template loop, behaves like BFS then
+    @Override
+    protected void frontierAdd(SearchState state, int node) {
+        state.addLast(node);
+    }
+
+    @Override
+    protected int frontierRemove(SearchState state) {
+        return state.pollFirst();
+    }
+}
@@ -0,0 +1,194 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+// stress tests for running many searches against one DotGraph at the same time
+
+public class ConcurrentSearchTest {
+
+    private static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+    // random graph with a fixed seed so every run sees the same thing
+    private static DotGraph randomGraph(int nodes, int edgesPerNode, long seed) {
+        DotGraph graph = new DotGraph();
+        Random rnd = new Random(seed);
+        for (int i = 0; i < nodes; i++) {
+            graph.addNode("n" + i);
+        }
+        for (int i = 0; i < nodes; i++) {
+            for (int j = 0; j < edgesPerNode; j++) {
+                graph.addEdge("n" + i, "n" + rnd.nextInt(nodes));
+            }
+        }
+        return graph;
+    }
+
+    private static String[][] randomPairs(int count, int nodes, long seed) {
+        Random rnd = new Random(seed);
+        String[][] pairs = new String[count][];
+        for (int i = 0; i < count; i++) {
+            pairs[i] = new String[]{"n" + rnd.nextInt(nodes), "n" + rnd.nextInt(nodes)};
+        }
+        return pairs;
+    }
+
+    // runs every pair on `threads` threads, returns the path strings in pair order
+    private static List<String> runConcurrently(int threads, String[][] pairs, int rounds,
+                                                BiFunction<String, String, Path> search) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String[]>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int offset = t;
+                futures.add(pool.submit(() -> {
+                    String[] out = new String[pairs.length];
+                    for (int r = 0; r < rounds; r++) {
+                        // every thread walks the pairs starting somewhere else
+                        for (int k = 0; k < pairs.length; k++) {
+                            int i = (k + offset * 37) % pairs.length;
+                            Path p = search.apply(pairs[i][0], pairs[i][1]);
+                            out[i] = p.getPathArray() + p.doesPathReachDestination();
+                        }
+                    }
+                    return out;
+                }));
+            }
+            List<String> first = null;
+            for (Future<String[]> f : futures) {
+                List<String> result = List.of(f.get());
+                if (first == null) {
+                    first = result;
+                }
+                assertEquals(first, result, "every thread should see the same paths");
+            }
+            return first;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testConcurrentGraphSearchMatchesSequential() throws Exception {
+        DotGraph graph = randomGraph(400, 3, 42);
+        String[][] pairs = randomPairs(100, 400, 7);
+
+        for (DotGraph.Algorithm algo : new DotGraph.Algorithm[]{graph.getBFS(), graph.getDFS()}) {
+            List<String> expected = new ArrayList<>();
+            for (String[] pair : pairs) {
+                Path p = graph.GraphSearch(pair[0], pair[1], algo);
+                expected.add(p.getPathArray() + p.doesPathReachDestination());
+            }
+            List<String> actual = runConcurrently(THREADS, pairs, 2, (s, d) -> graph.GraphSearch(s, d, algo));
+            assertEquals(expected, actual, algo + " results should not depend on concurrency");
+        }
+
+        // random walks can't be compared, but they shouldn't blow up or corrupt each other either
+        runConcurrentWalks(graph, pairs);
+    }
+
+    private static void runConcurrentWalks(DotGraph graph, String[][] pairs) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(pool.submit(() -> {
+                    for (String[] pair : pairs) {
+                        Path p = graph.GraphSearch(pair[0], pair[1], graph.getRANDOM_UNVISITED());
+                        assertEquals(pair[0].toUpperCase(), p.getNodes().get(0).getName());
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testSharedStrategyAcrossThreads() throws Exception {
+        // one strategy instance shared by every thread, like DotGraph does. how well that scales is
+        // measured by ScalingBench in the jmh profile, here it just has to give the same answers
+        DotGraph graph = randomGraph(20000, 4, 1);
+        String[][] pairs = randomPairs(100, 20000, 3);
+        BFSGraphSearch bfs = new BFSGraphSearch();
+
+        List<String> expected = new ArrayList<>();
+        for (String[] pair : pairs) {
+            Path p = bfs.search(graph, pair[0], pair[1]);
+            expected.add(p.getPathArray() + p.doesPathReachDestination());
+        }
+        assertEquals(expected, runConcurrently(1, pairs, 2, (s, d) -> bfs.search(graph, s, d)));
+        assertEquals(expected, runConcurrently(THREADS, pairs, 2, (s, d) -> bfs.search(graph, s, d)));
+    }
+
+    @Test
+    public void testBatchMatchesSingleQueries() throws Exception {
+        DotGraph graph = randomGraph(300, 2, 11);
+        // few sources, many destinations each, plus a missing dst and some repeats
+        List<PathQuery> queries = new ArrayList<>();
+        Random rnd = new Random(5);
+        for (int i = 0; i < 200; i++) {
+            queries.add(new PathQuery("n" + rnd.nextInt(10), "n" + rnd.nextInt(300)));
+        }
+        queries.add(new PathQuery("n1", "nowhere"));
+        queries.add(new PathQuery("n1", "n1"));
+        queries.add(queries.get(0));
+
+        try (ExecutorService virtualThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (DotGraph.Algorithm algo : new DotGraph.Algorithm[]{graph.getBFS(), graph.getDFS()}) {
+                List<Path> forkJoin = graph.GraphSearchBatch(queries, algo);
+                List<Path> virtual = graph.GraphSearchBatch(queries, algo, virtualThreads);
+                assertEquals(queries.size(), forkJoin.size());
+                for (int i = 0; i < queries.size(); i++) {
+                    Path single = graph.GraphSearch(queries.get(i).src(), queries.get(i).dst(), algo);
+                    String expected = single.getPathArray() + single.doesPathReachDestination();
+                    assertEquals(expected, forkJoin.get(i).getPathArray() + forkJoin.get(i).doesPathReachDestination(),
+                        algo + " batch result " + i + " should match a single query");
+                    assertEquals(expected, virtual.get(i).getPathArray() + virtual.get(i).doesPathReachDestination());
+                }
+            }
+
+            List<Path> walks = graph.GraphSearchBatch(queries, graph.getRANDOM_FULL());
+            for (int i = 0; i < queries.size(); i++) {
+                assertEquals(queries.get(i).src().toUpperCase(), walks.get(i).getNodes().get(0).getName());
+            }
+        }
+    }
+
+    @Test
+    public void testParallelBFSMatchesSequentialLength() {
+        // big enough that levels go parallel and the search switches to bottom-up and back
+        DotGraph graph = randomGraph(60000, 6, 21);
+        graph.addEdge("lonely", "n0");
+        String[][] pairs = randomPairs(40, 60000, 8);
+        BFSGraphSearch bfs = new BFSGraphSearch();
+
+        for (String[] pair : pairs) {
+            Path expected = bfs.search(graph, pair[0], pair[1]);
+            Path actual = graph.GraphSearch(pair[0], pair[1], graph.getPARALLEL_BFS());
+            assertEquals(expected.doesPathReachDestination(), actual.doesPathReachDestination());
+            if (expected.doesPathReachDestination()) {
+                assertEquals(expected.length(), actual.length(), "path length " + pair[0] + " -> " + pair[1]);
+                List<PathNode> nodes = actual.getNodes();
+                for (int i = 1; i < nodes.size(); i++) {
+                    assertTrue(graph.getNeighbors(nodes.get(i - 1).getName()).contains(nodes.get(i).getName().toLowerCase()),
+                        "parallel BFS path should follow edges: " + actual);
+                }
+            }
+        }
+        assertFalse(graph.GraphSearch("n0", "lonely", graph.getPARALLEL_BFS()).doesPathReachDestination(),
+            "nothing points at lonely");
+        assertEquals(1, graph.GraphSearch("n5", "n5", graph.getPARALLEL_BFS()).length());
+    }
+}
@@ -1,10 +1,39 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
 
@@ -283,4 +312,1160 @@ public class DotGraphTest {
         // dfs path should be A -> C -> E -> F 
         assertTrue(dfsOutput.contains("Path{nodes=[Node{a}, Node{c}, Node{e}, Node{f}]}"), "DFS path should be \"Path{nodes=[Node{a}, Node{c}, Node{e}, Node{f}]}\"");
     }
+
+    // PART 4 (performance work)
+
+    @Test
+    public void testGetNeighborsIndex() {
+        DotGraph graph = new DotGraph();
+        graph.addEdge("a", "b");
+        graph.addEdge("a", "c");
+        graph.addEdge("b", "c");
+        assertEquals(List.of("b", "c"), graph.getNeighbors("a"));
+        assertEquals(List.of("b", "c"), graph.getNeighbors("A"), "lookup should ignore case");
+
+        graph.removeEdge("a", "b");
+        assertEquals(List.of("c"), graph.getNeighbors("a"));
+
+        // removing a node drops its outgoing edges too
+        graph.removeNode("b");
+        assertTrue(graph.getNeighbors("b").isEmpty(), "b should have no neighbors after removal");
+        assertFalse(graph.edgesToString().contains("b -> c"), "b's outgoing edge should be gone");
+        assertTrue(graph.getNeighbors("zzz").isEmpty(), "unknown node should have no neighbors");
+    }
+
+    @Test
+    public void testFreezeSnapshot() {
+        DotGraph graph = new DotGraph();
+        graph.addNodes(new String[]{"a", "b", "c", "d"});
+        graph.addEdge("a", "b");
+        graph.addEdge("a", "c");
+        graph.addEdge("c", "b");
+
+        GraphSnapshot snap = graph.freeze();
+        assertEquals(4, snap.size());
+        assertEquals(3, snap.edgeCount());
+        assertSame(snap, graph.freeze(), "unchanged graph should reuse the snapshot");
+
+        int a = snap.id("a");
+        int b = snap.id("B");
+        assertEquals("A", snap.label(a));
+        assertEquals(2, snap.outDegree(a));
+        assertEquals(b, snap.target(snap.firstEdge(a)));
+        assertEquals(2, snap.inDegree(b));
+        assertEquals(0, snap.outDegree(snap.id("d")));
+        assertEquals(-1, snap.id("zzz"));
+
+        graph.addEdge("d", "a");
+        assertNotSame(snap, graph.freeze(), "mutation should invalidate the snapshot");
+        assertEquals(4, graph.freeze().edgeCount());
+    }
+
+    @Test
+    public void testSearchStateReuse() {
+        // a long chain with a shortcut, searched repeatedly through the same strategy instances
+        DotGraph graph = new DotGraph();
+        for (int i = 0; i < 2000; i++) {
+            graph.addEdge("n" + i, "n" + (i + 1));
+        }
+        graph.addEdge("n0", "n1500");
+
+        for (int round = 0; round < 3; round++) {
+            Path near = graph.GraphSearch("n0", "n2", graph.getBFS());
+            assertTrue(near.doesPathReachDestination(), "n2 should be reachable");
+            assertEquals("Path{nodes=[Node{n0}, Node{n1}, Node{n2}]}", near.getPathArray());
+
+            Path far = graph.GraphSearch("n0", "n1502", graph.getBFS());
+            assertEquals(4, far.getNodes().size(), "BFS should take the shortcut");
+
+            Path dead = graph.GraphSearch("n5", "n0", graph.getDFS());
+            assertFalse(dead.doesPathReachDestination(), "n0 is not reachable from n5");
+        }
+    }
+
+    @Test
+    public void testSearchUnknownSource() {
+        DotGraph graph = new DotGraph();
+        graph.addEdge("a", "b");
+        assertThrows(IllegalArgumentException.class, () -> graph.GraphSearch("zzz", "b", graph.getBFS()));
+    }
+
+    @Test
+    public void testRandomWalksFollowEdges() {
+        // wide fan-out so the frontier gets big
+        DotGraph graph = new DotGraph();
+        for (int i = 0; i < 500; i++) {
+            graph.addEdge("hub", "leaf" + i);
+            graph.addEdge("leaf" + i, "hub");
+        }
+        graph.addEdge("leaf7", "goal");
+
+        for (DotGraph.Algorithm algo : new DotGraph.Algorithm[]{graph.getRANDOM_FULL(),
+                graph.getRANDOM_UNVISITED(), graph.getRANDOM_BACKTRACK()}) {
+            for (int run = 0; run < 20; run++) {
+                Path p = graph.GraphSearch("hub", "goal", algo);
+                List<PathNode> nodes = p.getNodes();
+                assertEquals("HUB", nodes.get(0).getName());
+                for (int i = 1; i < nodes.size(); i++) {
+                    String prev = nodes.get(i - 1).getName().toLowerCase();
+                    assertTrue(graph.getNeighbors(prev).contains(nodes.get(i).getName().toLowerCase()),
+                        algo + " path should only follow edges: " + p);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPathSharesPrefixes() {
+        PathNode ab = new PathNode("A").append("B");
+        PathNode abc = ab.append("C");
+        PathNode abd = ab.append("D");
+        assertSame(abc.getParent(), abd.getParent(), "both paths should share the a -> b prefix");
+        assertEquals(3, abd.getDepth());
+
+        Path path = new Path(abd);
+        assertEquals(3, path.length());
+        assertEquals("Path{nodes=[Node{a}, Node{b}, Node{d}]}", path.getPathArray());
+        assertEquals("a->b->d (Dead end)", path.toString());
+        assertEquals(0, new Path(null).length());
+    }
+
+    @Test
+    public void testDeepDFSChain() {
+        DotGraph graph = new DotGraph();
+        int n = 20000;
+        for (int i = 0; i < n; i++) {
+            graph.addEdge("n" + i, "n" + (i + 1));
+        }
+        Path p = graph.GraphSearch("n0", "n" + n, graph.getDFS());
+        assertTrue(p.doesPathReachDestination(), "end of the chain should be reachable");
+        assertEquals(n + 1, p.length());
+        assertEquals("N" + n, p.getNodes().get(n).getName());
+    }
+
+    @Test
+    public void testBidirectionalBFS() {
+        DotGraph graph = new DotGraph();
+        graph.addNodes(new String[]{"a", "b", "c", "d", "e", "f"});
+        graph.addEdge("a", "b");
+        graph.addEdge("a", "c");
+        graph.addEdge("b", "d");
+        graph.addEdge("c", "e");
+        graph.addEdge("d", "f");
+        graph.addEdge("e", "f");
+
+        Path p = graph.GraphSearch("a", "f", graph.getBIDIRECTIONAL_BFS());
+        assertTrue(p.doesPathReachDestination(), "f should be reachable");
+        assertEquals(4, p.length());
+        assertEquals("A", p.getNodes().get(0).getName());
+        assertEquals("F", p.getLast().getName());
+
+        assertFalse(graph.GraphSearch("f", "a", graph.getBIDIRECTIONAL_BFS()).doesPathReachDestination(),
+            "a is not reachable from f");
+        assertEquals(1, graph.GraphSearch("c", "c", graph.getBIDIRECTIONAL_BFS()).length());
+    }
+
+    @Test
+    public void testBidirectionalMatchesBFSLength() {
+        Random rnd = new Random(3);
+        DotGraph graph = new DotGraph();
+        for (int i = 0; i < 300; i++) {
+            graph.addNode("n" + i);
+        }
+        for (int i = 0; i < 600; i++) {
+            graph.addEdge("n" + rnd.nextInt(300), "n" + rnd.nextInt(300), 1 + rnd.nextInt(9));
+        }
+        GraphSnapshot snapshot = graph.freeze();
+        BFSGraphSearch strategy = new BFSGraphSearch();
+        for (int q = 0; q < 200; q++) {
+            String src = "n" + rnd.nextInt(300);
+            String dst = "n" + rnd.nextInt(300);
+            Path bfs = strategy.search(graph, src, dst);
+            Path bidi = graph.GraphSearch(src, dst, graph.getBIDIRECTIONAL_BFS());
+            assertEquals(bfs.doesPathReachDestination(), bidi.doesPathReachDestination(), src + " -> " + dst);
+            if (bfs.doesPathReachDestination()) {
+                assertEquals(bfs.length(), bidi.length(), "shortest path length for " + src + " -> " + dst);
+                List<PathNode> nodes = bidi.getNodes();
+                double cost = 0;
+                for (int i = 1; i < nodes.size(); i++) {
+                    assertTrue(graph.getNeighbors(nodes.get(i - 1).getName()).contains(nodes.get(i).getName().toLowerCase()),
+                        "bidirectional path should follow edges: " + bidi);
+                    cost += snapshot.weight(snapshot.id(nodes.get(i - 1).getName()), snapshot.id(nodes.get(i).getName()));
+                }
+                assertEquals(cost, bidi.getCost(), "cost of " + bidi);
+                double bfsCost = 0;
+                for (int i = 1; i < bfs.length(); i++) {
+                    bfsCost += snapshot.weight(snapshot.id(bfs.getNodes().get(i - 1).getName()),
+                        snapshot.id(bfs.getNodes().get(i).getName()));
+                }
+                assertEquals(bfsCost, bfs.getCost(), "cost of " + bfs);
+            }
+        }
+
+        // both halves of the meeting keep their weights
+        DotGraph chain = new DotGraph();
+        chain.addEdge("s", "m", 1);
+        chain.addEdge("m", "t", 5);
+        chain.addEdge("t", "u", 7);
+        assertEquals(13.0, chain.GraphSearch("s", "u", chain.getBFS()).getCost());
+        assertEquals(13.0, chain.GraphSearch("s", "u", chain.getBIDIRECTIONAL_BFS()).getCost());
+    }
+
+    @Test
+    public void testWeightedSearch() throws IOException {
+        File tempFile = File.createTempFile("weighted", ".dot");
+        try (FileWriter writer = new FileWriter(tempFile)) {
+            writer.write("digraph {\n");
+            writer.write("    a -> b [weight=10];\n");
+            writer.write("    b -> d;\n");
+            writer.write("    a -> c [weight=1.5];\n");
+            writer.write("    c -> e [weight=2];\n");
+            writer.write("    e -> d [weight=0.5];\n");
+            writer.write("}\n");
+        }
+        DotGraph graph = DotGraph.parseGraph(tempFile.getAbsolutePath());
+        tempFile.delete();
+        assertTrue(graph.edgesToString().contains("a -> b [weight=10.0]"), "weight should be parsed");
+
+        // fewest hops goes through b, cheapest goes around through c and e
+        Path bfs = graph.GraphSearch("a", "d", graph.getBFS());
+        assertEquals(3, bfs.length());
+        assertEquals(11.0, bfs.getCost(), 1e-9);
+
+        Path dijkstra = graph.GraphSearch("a", "d", graph.getDIJKSTRA());
+        assertTrue(dijkstra.doesPathReachDestination(), "d should be reachable");
+        assertEquals("Path{nodes=[Node{a}, Node{c}, Node{e}, Node{d}]}", dijkstra.getPathArray());
+        assertEquals(4.0, dijkstra.getCost(), 1e-9);
+
+        // admissible heuristic (0.5 per remaining hop is never more than the real cost here)
+        graph.setHeuristic((node, target) -> node.equals(target) ? 0 : 0.5);
+        Path astar = graph.GraphSearch("a", "d", graph.getASTAR());
+        assertEquals(dijkstra.getPathArray(), astar.getPathArray());
+        assertEquals(4.0, astar.getCost(), 1e-9);
+
+        // re-adding an edge with a new weight updates it
+        graph.addEdge("a", "b", 0.1);
+        assertEquals("Path{nodes=[Node{a}, Node{b}, Node{d}]}", graph.GraphSearch("a", "d", graph.getDIJKSTRA()).getPathArray());
+        assertFalse(graph.GraphSearch("d", "a", graph.getDIJKSTRA()).doesPathReachDestination(), "a is not reachable from d");
+        assertThrows(IllegalArgumentException.class, () -> graph.addEdge("a", "b", -1));
+    }
+
+    @Test
+    public void testDijkstraMatchesBruteForce() {
+        // random weights, compare against Bellman-Ford style relaxation
+        Random rnd = new Random(9);
+        int n = 60;
+        DotGraph graph = new DotGraph();
+        double[][] w = new double[n][n];
+        for (double[] row : w) Arrays.fill(row, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < n; i++) graph.addNode("n" + i);
+        for (int k = 0; k < 240; k++) {
+            int u = rnd.nextInt(n);
+            int v = rnd.nextInt(n);
+            double weight = Math.round(rnd.nextDouble() * 100) / 10.0;
+            graph.addEdge("n" + u, "n" + v, weight);
+            w[u][v] = weight;
+        }
+        for (int src = 0; src < n; src += 7) {
+            double[] dist = new double[n];
+            Arrays.fill(dist, Double.POSITIVE_INFINITY);
+            dist[src] = 0;
+            for (int round = 0; round < n; round++) {
+                for (int u = 0; u < n; u++) {
+                    for (int v = 0; v < n; v++) {
+                        if (dist[u] + w[u][v] < dist[v]) dist[v] = dist[u] + w[u][v];
+                    }
+                }
+            }
+            for (int dst = 0; dst < n; dst++) {
+                Path p = graph.GraphSearch("n" + src, "n" + dst, graph.getDIJKSTRA());
+                if (dist[dst] == Double.POSITIVE_INFINITY) {
+                    assertFalse(p.doesPathReachDestination(), "n" + dst + " should be unreachable");
+                }
+                else {
+                    assertEquals(dist[dst], p.getCost(), 1e-9, "cost n" + src + " -> n" + dst);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testParseGraphDOTSyntax() throws IOException {
+        String dot = "/* header */ strict digraph \"g\" {\n"
+            + "    rankdir = LR; node [shape=box]\n"
+            + "    a -> b -> c; c -> d  // chain and two statements on one line\n"
+            + "# preprocessor line\n"
+            + "    \"e f\" -> g [label=\"x -> y\", weight=2.5];\n"
+            + "    lonely [color=red];\n"
+            + "    h:port:n -> {i j}\n"
+            + "    subgraph s { edge [weight=4]; k -> l }\n"
+            + "    m -> n\n"
+            + "}\n";
+        DotGraph graph = DotGraph.parseGraph(Channels.newChannel(new ByteArrayInputStream(dot.getBytes(StandardCharsets.UTF_8))));
+
+        Set<String> nodes = graph.getNodes();
+        for (String node : new String[] {"A", "B", "C", "D", "E F", "G", "LONELY", "H", "I", "J", "K", "L", "M", "N"}) {
+            assertTrue(nodes.contains(node), "graph should contain " + node);
+        }
+        assertEquals(14, nodes.size(), "keywords/attributes shouldn't become nodes");
+        String edges = graph.edgesToString();
+        assertTrue(edges.contains("a -> b"));
+        assertTrue(edges.contains("b -> c"));
+        assertTrue(edges.contains("c -> d"));
+        assertTrue(edges.contains("e f -> g [weight=2.5]"), "quoted id and weight attribute");
+        assertTrue(edges.contains("h -> i") && edges.contains("h -> j"), "subgraph as an edge endpoint");
+        assertTrue(edges.contains("k -> l [weight=4.0]"), "edge default inside the subgraph");
+        assertTrue(edges.contains("m -> n") && !edges.contains("m -> n [weight"), "edge default shouldn't leak out of the subgraph");
+
+        // undirected edges go both ways
+        DotGraph undirected = DotGraph.parseGraph(Channels.newChannel(new ByteArrayInputStream("graph { x -- y }".getBytes(StandardCharsets.UTF_8))));
+        assertEquals(Arrays.asList("x"), undirected.getNeighbors("y"));
+        assertEquals(Arrays.asList("y"), undirected.getNeighbors("x"));
+    }
+
+    @Test
+    public void testParseGraphLargeFile() throws IOException {
+        // bigger than the tokenizer's buffer, so tokens end up split across refills
+        File tempFile = File.createTempFile("large", ".dot");
+        int n = 20000;
+        try (FileWriter writer = new FileWriter(tempFile)) {
+            writer.write("digraph {\n");
+            for (int i = 0; i < n; i++) {
+                writer.write("    \"node number " + i + "\" -> \"node number " + (i + 1) + "\";\n");
+            }
+            writer.write("}\n");
+        }
+        DotGraph graph = DotGraph.parseGraph(tempFile.getAbsolutePath());
+        tempFile.delete();
+        assertEquals(n + 1, graph.getNodes().size());
+        assertEquals(n + 1, graph.GraphSearch("node number 0", "node number " + n, graph.getBFS()).length());
+    }
+
+    @Test
+    public void testParseGraphSyntaxError() {
+        IOException e = assertThrows(IOException.class, () -> DotGraph.parseGraph(
+            Channels.newChannel(new ByteArrayInputStream("digraph {\n a -> b\n c -> ;\n}".getBytes(StandardCharsets.UTF_8)))));
+        assertTrue(e.getMessage().contains("line 3"), "error should say where: " + e.getMessage());
+        assertThrows(IOException.class, () -> DotGraph.parseGraph(
+            Channels.newChannel(new ByteArrayInputStream("digraph { a -> b".getBytes(StandardCharsets.UTF_8)))));
+    }
+
+    @Test
+    public void testParseGraphParallelMatchesSequential() throws IOException {
+        File tempFile = File.createTempFile("chunks", ".dot");
+        try (FileWriter writer = new FileWriter(tempFile)) {
+            writer.write("digraph big {\n    edge [weight=2]\n");
+            Random rnd = new Random(12);
+            for (int i = 0; i < 3000; i++) {
+                int u = rnd.nextInt(500);
+                int v = rnd.nextInt(500);
+                if (i % 7 == 0) {
+                    writer.write("    \"n " + u + "\" -> n" + v + " -> n" + (v + 1) + ";\n");
+                }
+                else if (i % 11 == 0) {
+                    writer.write("    n" + u + " -> n" + v + " [weight=" + (i % 5) + "]\n");
+                }
+                else if (i == 1500) {
+                    writer.write("    edge [weight=9]\n");     // top-level default changes halfway through
+                }
+                else {
+                    writer.write("    n" + u + " -> n" + v + "\n");
+                }
+            }
+            writer.write("    isolated\n}\n");
+        }
+        DotGraph sequential = DotGraph.parseGraph(tempFile.getAbsolutePath());
+        try (FileChannel channel = FileChannel.open(tempFile.toPath())) {
+            for (int chunks : new int[] {1, 2, 7, 64}) {
+                DotGraph parallel = DotChunkLoader.load(channel, chunks, ForkJoinPool.commonPool());
+                assertEquals(new ArrayList<>(sequential.getNodes()), new ArrayList<>(parallel.getNodes()), chunks + " chunks");
+                assertEquals(sequential.edgesToString(), parallel.edgesToString(), chunks + " chunks");
+            }
+        }
+        assertEquals(sequential.edgesToString(), DotGraph.parseGraphParallel(tempFile.getAbsolutePath()).edgesToString());
+        tempFile.delete();
+    }
+
+    @Test
+    public void testParseGraphParallelFallsBack() throws IOException {
+        // statements spread over several lines can't be split anywhere, the loader has to notice
+        File tempFile = File.createTempFile("fallback", ".dot");
+        try (FileWriter writer = new FileWriter(tempFile)) {
+            writer.write("digraph {\n");
+            for (int i = 0; i < 200; i++) {
+                writer.write("    subgraph s" + i + " {\n        a" + i + " ->\n        b" + i + "\n        [weight=3]\n    }\n");
+                writer.write("    /* comment\n       a" + i + " -> nope\n    */\n");
+            }
+            writer.write("}\n");
+        }
+        DotGraph sequential = DotGraph.parseGraph(tempFile.getAbsolutePath());
+        try (FileChannel channel = FileChannel.open(tempFile.toPath())) {
+            DotGraph parallel = DotChunkLoader.load(channel, 16, ForkJoinPool.commonPool());
+            assertEquals(sequential.edgesToString(), parallel.edgesToString());
+            assertEquals(400, parallel.getNodes().size());
+        }
+        tempFile.delete();
+    }
+
+    @Test
+    public void testSnapshotFileRoundTrip() throws IOException {
+        DotGraph graph = new DotGraph();
+        Random rnd = new Random(5);
+        for (int i = 0; i < 300; i++) {
+            graph.addEdge("n" + rnd.nextInt(100), "n" + rnd.nextInt(100), rnd.nextInt(10));
+        }
+        graph.addNode("lonely");
+        graph.addEdge("n1", "n\u00e9");     // non-ASCII label
+        File file = File.createTempFile("graph", ".snap");
+        graph.saveSnapshot(file.getAbsolutePath());
+
+        DotGraph loaded = DotGraph.loadSnapshot(file.getAbsolutePath());
+        GraphSnapshot a = graph.freeze();
+        GraphSnapshot b = loaded.freeze();
+        assertEquals(a.size(), b.size());
+        assertEquals(a.edgeCount(), b.edgeCount());
+        for (int v = 0; v < a.size(); v++) {
+            assertEquals(a.label(v), b.label(v));
+            assertEquals(v, b.id(a.label(v).toLowerCase()), "label lookup is case insensitive");
+            assertEquals(a.inDegree(v), b.inDegree(v));
+            for (int e = a.firstEdge(v); e < a.endEdge(v); e++) {
+                assertEquals(a.target(e), b.target(e));
+                assertEquals(a.weight(e), b.weight(e));
+            }
+            for (int e = a.firstInEdge(v); e < a.endInEdge(v); e++) {
+                assertEquals(a.source(e), b.source(e));
+                assertEquals(a.inWeight(e), b.inWeight(e));
+                assertEquals(a.weight(a.source(e), v), a.inWeight(e));
+            }
+        }
+        assertEquals(-1, b.id("missing"));
+        for (int i = 0; i < 20; i++) {
+            String src = "n" + rnd.nextInt(100);
+            String dst = "n" + rnd.nextInt(100);
+            assertEquals(graph.GraphSearch(src, dst, graph.getDIJKSTRA()).getCost(),
+                loaded.GraphSearch(src, dst, loaded.getDIJKSTRA()).getCost(), 1e-9);
+            assertEquals(graph.GraphSearch(src, dst, graph.getBIDIRECTIONAL_BFS()).getCost(),
+                loaded.GraphSearch(src, dst, loaded.getBIDIRECTIONAL_BFS()).getCost(), 1e-9);
+        }
+
+        // the node/edge sets only show up when needed, and mutations work as usual afterwards
+        assertSame(b, loaded.freeze());
+        assertTrue(loaded.getNodes().contains("LONELY"));
+        assertSame(b, loaded.freeze(), "materializing shouldn't invalidate the snapshot");
+        loaded.addEdge("lonely", "n1");
+        assertNotSame(b, loaded.freeze());
+        assertTrue(loaded.GraphSearch("lonely", "n\u00e9", loaded.getBFS()).doesPathReachDestination());
+        file.delete();
+    }
+
+    @Test
+    public void testSnapshotFileRejectsGarbage() throws IOException {
+        File file = File.createTempFile("garbage", ".snap");
+        Files.write(file.toPath(), "digraph { a -> b }".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IOException.class, () -> DotGraph.loadSnapshot(file.getAbsolutePath()));
+
+        DotGraph graph = new DotGraph();
+        graph.addEdge("a", "b");
+        graph.saveSnapshot(file.getAbsolutePath());
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length - 1));
+        assertThrows(IOException.class, () -> DotGraph.loadSnapshot(file.getAbsolutePath()));
+        file.delete();
+    }
+
+    @Test
+    public void testStreamingExport() throws IOException {
+        DotGraph graph = new DotGraph();
+        graph.addEdge("a", "B");
+        graph.addEdge("e f", "node", 2.5);    // needs quoting: a space and a keyword
+        graph.addNode("42");
+        assertEquals("Nodes (5): [a, b, e f, node, 42]\nEdges (2):\n  a -> b\n  e f -> node [weight=2.5]\n", graph.toString());
+
+        StringWriter dot = new StringWriter();
+        graph.export(DotGraph.ExportFormat.DOT, dot);
+        assertTrue(dot.toString().contains("    \"e f\" -> \"node\" [weight=2.5];\n"), dot.toString());
+        assertTrue(dot.toString().contains("    42;\n"), "numerals don't need quotes");
+
+        // gzip onto a channel, then read it back through the parser
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        graph.export(DotGraph.ExportFormat.DOT, Channels.newChannel(bytes), true);
+        DotGraph back = DotGraph.parseGraph(Channels.newChannel(new GZIPInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+        assertEquals(graph.getNodes(), back.getNodes());
+        assertEquals(2.5, back.freeze().weight(back.freeze().id("e f"), back.freeze().id("node")));
+
+        // .gz paths get compressed too
+        File file = File.createTempFile("export", ".txt.gz");
+        graph.outputGraphToText(file.getAbsolutePath());
+        try (GZIPInputStream in = new GZIPInputStream(Files.newInputStream(file.toPath()))) {
+            assertEquals(graph.toString(), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        file.delete();
+    }
+
+    @Test
+    public void testExportRoundTripsExtremeWeights() throws IOException {
+        DotGraph graph = new DotGraph();
+        double[] weights = {1.0E7, 1.0E-4, 123456789012.5, Double.MAX_VALUE, Double.MIN_VALUE, 0.0};
+        for (int i = 0; i < weights.length; i++) {
+            graph.addEdge("a", "b" + i, weights[i]);
+        }
+        StringWriter dot = new StringWriter();
+        graph.export(DotGraph.ExportFormat.DOT, dot);
+        assertFalse(dot.toString().contains("E"), dot.toString());
+        assertTrue(dot.toString().contains("a -> b0 [weight=10000000];"), dot.toString());
+        DotGraph back = DotGraph.parseGraph(Channels.newChannel(
+            new ByteArrayInputStream(dot.toString().getBytes(StandardCharsets.UTF_8))));
+        assertEquals(edgeSet(graph), edgeSet(back));
+    }
+
+    @Test
+    public void testExportRoundTripsOddLabels() throws IOException {
+        String[] labels = {"x\\", "\\", "a\"b", "\\\"", "c:\\dir\\", "two\nlines", "cr\r\nlf", "ends\\\n", "tab\there"};
+        DotGraph graph = new DotGraph();
+        for (int i = 0; i < labels.length; i++) {
+            graph.addEdge(labels[i], labels[(i + 1) % labels.length], i + 1);
+        }
+        StringWriter dot = new StringWriter();
+        graph.export(DotGraph.ExportFormat.DOT, dot);
+        assertTrue(dot.toString().contains("\"x\\\\\""), dot.toString());
+        DotGraph back = DotGraph.parseGraph(Channels.newChannel(
+            new ByteArrayInputStream(dot.toString().getBytes(StandardCharsets.UTF_8))));
+        assertEquals(graph.getNodes(), back.getNodes());
+        assertEquals(edgeSet(graph), edgeSet(back));
+
+        // a statement spread over lines by a label can't be split, the chunked loader has to notice
+        File file = File.createTempFile("labels", ".dot");
+        DotGraph big = new DotGraph();
+        for (int i = 0; i < 300; i++) {
+            big.addEdge("n" + i + labels[i % labels.length], "n" + (i + 1) + labels[(i + 1) % labels.length]);
+        }
+        big.outputDOTGraph(file.getAbsolutePath());
+        try (FileChannel channel = FileChannel.open(file.toPath())) {
+            DotGraph parallel = DotChunkLoader.load(channel, 16, ForkJoinPool.commonPool());
+            assertEquals(big.getNodes(), parallel.getNodes());
+            assertEquals(edgeSet(big), edgeSet(parallel));
+        }
+        file.delete();
+    }
+
+    // stand-in for Graphviz: a shell script with the given body
+    private static File fakeDot(String body) throws IOException {
+        File script = File.createTempFile("fake-dot", ".sh");
+        Files.writeString(script.toPath(), "#!/bin/sh\n" + body + "\n");
+        script.setExecutable(true);
+        script.deleteOnExit();
+        return script;
+    }
+
+    @Test
+    public void testGraphRendererPipesAndCaches() throws IOException, InterruptedException {
+        // echoes the format, then copies stdin to both stdout and stderr; with a big graph both
+        // pipes fill up unless they're drained at the same time
+        File script = fakeDot("echo \"format $1\"; tee /dev/stderr");
+        GraphRenderer renderer = new GraphRenderer(List.of(script.getAbsolutePath()), 2, 8);
+        DotGraph graph = new DotGraph();
+        for (int i = 0; i < 20000; i++) {
+            graph.addEdge("n" + i, "n" + (i + 1));
+        }
+        graph.setRenderer(renderer);
+
+        File out = File.createTempFile("render", ".png");
+        graph.outputGraphics(out.getAbsolutePath(), "png");
+        String rendered = Files.readString(out.toPath());
+        assertTrue(rendered.startsWith("format -Tpng\ndigraph {\n"), "DOT should come in on stdin");
+        assertTrue(rendered.contains("n19999 -> n20000;"));
+        out.delete();
+
+        // unchanged graph: served from the cache; changed graph or other format: rendered again
+        byte[] first = renderer.render(graph, "png");
+        assertEquals(1, renderer.getCacheMisses());
+        assertEquals(1, renderer.getCacheHits());
+        // callers get their own copy, scribbling on it doesn't touch the cache
+        byte[] original = first.clone();
+        Arrays.fill(first, (byte) 0);
+        assertArrayEquals(original, renderer.render(graph, "png"));
+        assertEquals(2, renderer.getCacheHits());
+        graph.addEdge("x", "y");
+        assertNotSame(first, renderer.render(graph, "png"));
+        renderer.render(graph, "svg");
+        assertEquals(3, renderer.getCacheMisses());
+        // back to the same content at a new version: found by content
+        graph.removeEdge("x", "y");
+        graph.removeNode("x");
+        graph.removeNode("y");
+        assertArrayEquals(original, renderer.render(graph, "png"));
+        assertEquals(3, renderer.getCacheMisses());
+    }
+
+    @Test
+    public void testGraphRendererFailure() throws IOException {
+        File script = fakeDot("echo 'syntax error near line 1' >&2; exit 3");
+        DotGraph graph = new DotGraph();
+        graph.addEdge("a", "b");
+        graph.setRenderer(new GraphRenderer(List.of(script.getAbsolutePath()), 1, 0));
+        IOException e = assertThrows(IOException.class, () -> graph.outputGraphics("never_written.png", "png"));
+        assertTrue(e.getMessage().contains("exit 3") && e.getMessage().contains("syntax error"), e.getMessage());
+        assertFalse(new File("never_written.png").exists());
+    }
+
+    @Test
+    public void testSymbolTableInterning() {
+        DotGraph graph = new DotGraph();
+        graph.addEdge(new String("alpha"), new String("beta"));
+        graph.addEdge(new String("ALPHA"), new String("Beta"));     // same edge, different case
+        graph.addEdge(new String("beta"), new String("alpha"));
+        assertEquals(2, graph.freeze().edgeCount());
+        assertEquals("  alpha -> beta\n  beta -> alpha\n", graph.edgesToString(), "first spelling is kept for display");
+
+        // one canonical String per label, whoever asks for it
+        String a = null;
+        for (String node : graph.getNodes()) {
+            if (node.equals("ALPHA")) a = node;
+        }
+        graph.addNode(new String("Alpha"));
+        for (String node : graph.getNodes()) {
+            if (node.equals("ALPHA")) assertSame(a, node);
+        }
+
+        graph.removeEdge("Alpha", "BETA");
+        assertEquals("  beta -> alpha\n", graph.edgesToString());
+        assertEquals(Arrays.asList("alpha"), graph.getNeighbors("BETA"));
+    }
+
+    @Test
+    public void testEdgeSetMatchesHashSet() {
+        // random adds/removes against a plain HashSet, with enough removals to force compaction
+        EdgeSet edges = new EdgeSet();
+        LinkedHashSet<Long> expected = new LinkedHashSet<>();
+        Random rnd = new Random(3);
+        for (int k = 0; k < 50000; k++) {
+            long e = EdgeSet.pack(rnd.nextInt(200), rnd.nextInt(200));
+            if (rnd.nextInt(3) == 0) {
+                assertEquals(expected.remove(e), edges.remove(e));
+            }
+            else {
+                assertEquals(expected.add(e), edges.add(e, rnd.nextInt(4)) >= 0);
+            }
+        }
+        assertEquals(expected.size(), edges.size());
+        List<Long> order = new ArrayList<>();
+        for (int i = 0; i < edges.logSize(); i++) {
+            if (edges.isLive(i)) order.add(edges.edgeAt(i));
+        }
+        assertEquals(new ArrayList<>(expected), order, "insertion order should survive removals");
+        for (int u = 0; u < 200; u++) {
+            long e = EdgeSet.pack(u, u);
+            assertEquals(expected.contains(e), edges.contains(e));
+        }
+    }
+
+    @Test
+    public void testBatchReportsChanges() {
+        DotGraph graph = new DotGraph();
+        graph.addEdge("a", "b");
+        long before = graph.getVersion();
+        GraphChanges changes = graph.batch()
+            .addNode("a")                   // already there
+            .addEdge("b", "c", 2.0)
+            .addEdge("a", "b", 3.0)         // reweight
+            .addEdge("c", "d")
+            .removeEdge("x", "y")           // not there
+            .removeEdge("c", "d")
+            .apply();
+        assertEquals(before, changes.getFromVersion());
+        assertEquals(before + 1, changes.getToVersion(), "a batch is a single version bump");
+        assertEquals(before + 1, graph.getVersion());
+        assertEquals(new LinkedHashSet<>(Arrays.asList("C", "D")), changes.getAddedNodes());
+        assertEquals(2, changes.getEdgesAdded());
+        assertEquals(1, changes.getEdgesRemoved());
+        assertEquals(1, changes.getEdgesReweighted());
+        assertEquals(new LinkedHashSet<>(Arrays.asList("B", "C", "A", "D")), changes.getTouchedNodes());
+        GraphSnapshot snapshot = graph.freeze();
+        assertEquals(3.0, snapshot.weight(snapshot.id("a"), snapshot.id("b")));
+
+        GraphChanges none = graph.batch().addNode("a").removeEdge("a", "z").apply();
+        assertTrue(none.isEmpty());
+        assertEquals(before + 1, graph.getVersion());
+    }
+
+    @Test
+    public void testRemoveNodeRemovesIncidentEdges() {
+        DotGraph graph = new DotGraph();
+        graph.addEdge("a", "hub");
+        graph.addEdge("b", "hub");
+        graph.addEdge("hub", "c");
+        graph.addEdge("c", "a");
+        GraphChanges changes = graph.batch().removeNode("HUB").apply();
+        assertEquals(Set.of("HUB"), changes.getRemovedNodes());
+        assertEquals(3, changes.getEdgesRemoved());
+        assertEquals("  c -> a\n", graph.edgesToString());
+        assertTrue(graph.getNeighbors("a").isEmpty(), "incoming edges go too");
+
+        // re-adding the node doesn't bring any old edges back
+        graph.addNode("hub");
+        assertTrue(graph.getNeighbors("hub").isEmpty());
+        assertEquals(1, graph.freeze().edgeCount());
+    }
+
+    @Test
+    public void testBatchMatchesSingleOps() {
+        Random rnd = new Random(11);
+        DotGraph single = new DotGraph();
+        DotGraph batched = new DotGraph();
+        for (int round = 0; round < 50; round++) {
+            GraphBatch batch = batched.batch();
+            for (int k = 0; k < 40; k++) {
+                String a = "n" + rnd.nextInt(30);
+                String b = "n" + rnd.nextInt(30);
+                switch (rnd.nextInt(6)) {
+                    case 0: single.removeNode(a); batch.removeNode(a); break;
+                    case 1: single.removeEdge(a, b); batch.removeEdge(a, b); break;
+                    case 2: single.addEdge(a, b, k); batch.addEdge(a, b, k); break;
+                    default: single.addEdge(a, b); batch.addEdge(a, b); break;
+                }
+            }
+            batch.apply();
+            assertEquals(single.getNodes(), batched.getNodes());
+            assertEquals(edgeSet(single), edgeSet(batched));
+            for (String node : single.getNodes()) {
+                assertEquals(new HashSet<>(single.getNeighbors(node)), new HashSet<>(batched.getNeighbors(node)));
+            }
+        }
+    }
+
+    @Test
+    public void testPathCache() {
+        DotGraph graph = new DotGraph();
+        graph.addEdge("a", "b");
+        graph.addEdge("b", "c");
+        PathCache cache = graph.enablePathCache(2);
+
+        Path first = graph.GraphSearch("a", "c", DotGraph.Algorithm.DIJKSTRA);
+        assertSame(first, graph.GraphSearch("A", "C", DotGraph.Algorithm.DIJKSTRA), "labels are case insensitive");
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        // random walks are never cached
+        graph.GraphSearch("a", "c", DotGraph.Algorithm.RANDOM_FULL);
+        assertEquals(2, cache.getHits() + cache.getMisses());
+
+        // LRU: touching a->c keeps it, b->c gets evicted by a->b
+        graph.GraphSearch("b", "c", DotGraph.Algorithm.BFS);
+        graph.GraphSearch("a", "c", DotGraph.Algorithm.DIJKSTRA);
+        graph.GraphSearch("a", "b", DotGraph.Algorithm.BFS);
+        assertEquals(1, cache.getEvictions());
+        assertSame(first, graph.GraphSearch("a", "c", DotGraph.Algorithm.DIJKSTRA));
+
+        // any mutation invalidates everything
+        graph.addEdge("a", "c");
+        Path after = graph.GraphSearch("a", "c", DotGraph.Algorithm.DIJKSTRA);
+        assertNotSame(first, after);
+        assertEquals(2, after.length());
+        assertEquals(1, cache.size());
+
+        graph.disablePathCache();
+        assertNotSame(graph.GraphSearch("a", "c", DotGraph.Algorithm.BFS), graph.GraphSearch("a", "c", DotGraph.Algorithm.BFS));
+    }
+
+    @Test
+    public void testReachabilityIndexMatchesBFS() {
+        // small graph gets the bitset closure, the big sparse one (thousands of SCCs) the interval labels
+        for (int n : new int[]{300, 12000}) {
+            Random rnd = new Random(n);
+            DotGraph graph = new DotGraph();
+            for (int i = 0; i < n; i++) {
+                graph.addNode("n" + i);
+            }
+            for (int k = 0; k < n * 5 / 4; k++) {
+                graph.addEdge("n" + rnd.nextInt(n), "n" + rnd.nextInt(n));
+            }
+            GraphSnapshot s = graph.freeze();
+            ReachabilityIndex index = s.reachability();
+            assertTrue(n < ReachabilityIndex.BITSET_LIMIT || index.componentCount() > ReachabilityIndex.BITSET_LIMIT);
+            for (int q = 0; q < 40; q++) {
+                int u = rnd.nextInt(n);
+                boolean[] seen = new boolean[n];
+                IntList todo = new IntList();
+                todo.add(u);
+                seen[u] = true;
+                while (!todo.isEmpty()) {
+                    int x = todo.removeLast();
+                    for (int e = s.firstEdge(x); e < s.endEdge(x); e++) {
+                        if (!seen[s.target(e)]) {
+                            seen[s.target(e)] = true;
+                            todo.add(s.target(e));
+                        }
+                    }
+                }
+                for (int v = 0; v < n; v++) {
+                    assertEquals(seen[v], index.reaches(u, v), s.label(u) + " -> " + s.label(v));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testReachabilityIndexShortcutsSearch() {
+        DotGraph graph = new DotGraph();
+        graph.addEdge("a", "b");
+        graph.addEdge("b", "a");
+        graph.addEdge("b", "c");
+        graph.addEdge("d", "a");
+        graph.enableReachabilityIndex();
+        assertTrue(graph.canReach("a", "c"));
+        assertFalse(graph.canReach("c", "a"));
+        assertFalse(graph.canReach("a", "d"));
+        assertFalse(graph.canReach("a", "nope"));
+
+        Path p = graph.GraphSearch("a", "d", DotGraph.Algorithm.BFS);
+        assertFalse(p.doesPathReachDestination());
+        assertEquals("a (Dead end)", p.toString());
+        assertEquals("a->b->c (Target node!)", graph.GraphSearch("a", "c", DotGraph.Algorithm.BFS).toString());
+        List<Path> batch = graph.GraphSearchBatch(
+            Arrays.asList(new PathQuery("a", "d"), new PathQuery("d", "c")), DotGraph.Algorithm.DFS);
+        assertEquals("a (Dead end)", batch.get(0).toString());
+        assertEquals("d->a->b->c (Target node!)", batch.get(1).toString());
+
+        // the index follows the graph
+        graph.addEdge("c", "d");
+        assertTrue(graph.canReach("a", "d"));
+        assertTrue(graph.GraphSearch("a", "d", DotGraph.Algorithm.BFS).doesPathReachDestination());
+        assertThrows(IllegalArgumentException.class, () -> graph.GraphSearch("nope", "a", DotGraph.Algorithm.BFS));
+    }
+
+    @Test
+    public void testBatchIgnoresDefaultLocale() {
+        DotGraph graph = new DotGraph();
+        graph.addEdge("a", "i");
+        graph.addEdge("i", "b");
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr"));     // "i".toUpperCase() is "İ" here
+        try {
+            List<Path> batch = graph.GraphSearchBatch(
+                Arrays.asList(new PathQuery("i", "b"), new PathQuery("I", "a")), DotGraph.Algorithm.BFS);
+            assertTrue(batch.get(0).doesPathReachDestination());
+            assertEquals(2, batch.get(0).length());
+            assertFalse(batch.get(1).doesPathReachDestination());
+        } finally {
+            Locale.setDefault(locale);
+        }
+        assertThrows(IllegalArgumentException.class, () -> graph.GraphSearchBatch(
+            Arrays.asList(new PathQuery("nope", "a")), DotGraph.Algorithm.BFS));
+    }
+
+    @Test
+    public void testRandomWalkEngine() {
+        DotGraph graph = new DotGraph();
+        Random rnd = new Random(5);
+        for (int i = 0; i < 200; i++) {
+            graph.addEdge("n" + i, "n" + ((i + 1) % 200));
+            graph.addEdge("n" + i, "n" + rnd.nextInt(200));
+        }
+        graph.addEdge("n5", "dead");
+
+        // same seed, same stats, however the walks get spread over threads
+        RandomWalkEngine engine = new RandomWalkEngine(RWGraphSearch.Mode.FULLY_RANDOM, 42, 500, Duration.ofSeconds(10));
+        WalkStats a = engine.run(graph, "n0", "n99", 3000);
+        WalkStats b = engine.run(graph, "n0", "n99", 3000, Runnable::run);
+        assertEquals(3000, a.getWalks());
+        assertEquals(a.getWalks(), a.getHits() + a.getStuck() + a.getOutOfSteps() + a.getOutOfTime());
+        assertEquals(a.toString(), b.toString());
+        assertArrayEquals(a.getHitLengthHistogram(), b.getHitLengthHistogram());
+        assertEquals(a.getVisitCounts(), b.getVisitCounts());
+        ForkJoinPool four = new ForkJoinPool(4);
+        try {
+            assertEquals(a.getVisitCounts(), engine.run(graph, "n0", "n99", 3000, four).getVisitCounts());
+        } finally {
+            four.shutdown();
+        }
+        assertEquals(0, engine.run(graph, "n0", "n99", 0).getWalks());
+        assertTrue(a.getVisits("n0") >= 3000, "every walk starts at n0");
+        assertTrue(a.getHits() > 0 && a.getStuck() > 0, a.toString());
+        assertNotEquals(a.toString(), new RandomWalkEngine(RWGraphSearch.Mode.FULLY_RANDOM, 43, 500,
+            Duration.ofSeconds(10)).run(graph, "n0", "n99", 3000).toString());
+
+        // the step budget holds: a cycle never gets stuck and never hits a missing dst
+        WalkStats capped = new RandomWalkEngine(RWGraphSearch.Mode.FULLY_RANDOM, 1, 50, Duration.ofSeconds(10))
+            .run(graph, "n1", "missing", 100);
+        assertEquals(100, capped.getOutOfSteps() + capped.getStuck());
+        assertEquals(0, capped.getHits());
+
+        // backtracking walks find anything reachable eventually
+        WalkStats backtrack = new RandomWalkEngine(RWGraphSearch.Mode.HISTORY_BACKTRACK, 7, 1_000_000, Duration.ofSeconds(10))
+            .run(graph, "n0", "dead", 200);
+        assertEquals(1.0, backtrack.getHitRate());
+        assertThrows(IllegalArgumentException.class, () -> engine.run(graph, "nope", "n1", 1));
+    }
+
+    @Test
+    public void testGraphGenerator() throws IOException {
+        File dot = File.createTempFile("gen", ".dot.gz");
+        File snap = File.createTempFile("gen", ".snap");
+        dot.deleteOnExit();
+        snap.deleteOnExit();
+        GraphGenerator[] generators = {
+            GraphGenerator.erdosRenyi(2000, 10000, 1).withWeights(50),
+            GraphGenerator.powerLaw(2000, 10000, 2),
+            GraphGenerator.grid(30, 40),
+            GraphGenerator.chain(500),
+        };
+        for (GraphGenerator generator : generators) {
+            DotGraph graph = generator.toGraph();
+            assertEquals(generator.nodeCount(), graph.getNodes().size());
+            // same seed, same graph, whichever way it gets out
+            assertEquals(edgeSet(graph), edgeSet(generator.toGraph()));
+            generator.writeDOT(dot.getAbsolutePath());
+            try (FileChannel in = FileChannel.open(dot.toPath())) {
+                assertEquals(edgeSet(graph), edgeSet(DotGraph.parseGraph(Channels.newChannel(
+                    new GZIPInputStream(Channels.newInputStream(in))))));
+            }
+            generator.writeSnapshot(snap.getAbsolutePath());
+            DotGraph loaded = DotGraph.loadSnapshot(snap.getAbsolutePath());
+            assertEquals(edgeSet(graph), edgeSet(loaded));
+            assertEquals(graph.freeze().edgeCount(), loaded.freeze().edgeCount());
+        }
+
+        GraphSnapshot er = generators[0].toGraph().freeze();
+        assertTrue(Math.abs(er.edgeCount() - 10000) < 500, "about the requested edge count: " + er.edgeCount());
+        assertTrue(er.isWeighted());
+        GraphSnapshot pl = generators[1].toGraph().freeze();
+        assertEquals(10000, pl.edgeCount());
+        assertTrue(pl.inDegree(pl.id("n0")) > 20 * 10000 / 2000, "low ids are the hubs");
+        GraphSnapshot grid = generators[2].toGraph().freeze();
+        assertEquals(2 * 29 * 40 + 2 * 30 * 39, grid.edgeCount());
+        assertEquals(4, grid.outDegree(grid.id("n41")));
+    }
+
+    @Test
+    public void testSearchMetrics() throws IOException {
+        DotGraph graph = new DotGraph();
+        for (int i = 0; i < 50; i++) {
+            graph.addEdge("n" + i, "n" + (i + 1));
+            graph.addEdge("n" + i, "n" + (i * 7 % 51));
+        }
+        graph.addNode("alone");
+        SearchMetrics metrics = new SearchMetrics();
+        graph.setSearchObserver(metrics);
+
+        PrintStream out = System.out;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(printed));
+        try {
+            for (DotGraph.Algorithm algo : DotGraph.Algorithm.values()) {
+                graph.GraphSearch("n0", "n50", algo);
+            }
+            graph.GraphSearch("n0", "alone", DotGraph.Algorithm.BFS);
+        } finally {
+            System.setOut(out);
+        }
+        assertEquals(0, printed.size(), "searches shouldn't print anything");
+
+        SearchMetrics.Stats bfs = metrics.get(DotGraph.Algorithm.BFS);
+        assertEquals(2, bfs.getSearches());
+        assertEquals(1, bfs.getReached());
+        // the failed search expands everything reachable from n0, 51 nodes and 100 edges
+        assertTrue(bfs.getNodesExpanded() >= 51, bfs.toString());
+        assertTrue(bfs.getEdgesScanned() >= 100, bfs.toString());
+        assertTrue(bfs.getPeakFrontier() > 0);
+        assertEquals(2, bfs.getLatency().getCount());
+        assertTrue(bfs.getLatency().percentile(1.0) > 0);
+        for (DotGraph.Algorithm algo : new DotGraph.Algorithm[]{DotGraph.Algorithm.DFS, DotGraph.Algorithm.DIJKSTRA,
+                DotGraph.Algorithm.BIDIRECTIONAL_BFS, DotGraph.Algorithm.PARALLEL_BFS}) {
+            SearchMetrics.Stats stats = metrics.get(algo);
+            assertEquals(1, stats.getReached(), algo.toString());
+            assertTrue(stats.getNodesExpanded() > 0 && stats.getEdgesScanned() > 0, algo + ": " + stats);
+        }
+        assertEquals(DotGraph.Algorithm.values().length + 1, metrics.getSearches());
+
+        // a batch is traced per query, with a shared traversal's work counted once
+        long expanded = metrics.get(DotGraph.Algorithm.BFS).getNodesExpanded();
+        List<Path> batch = graph.GraphSearchBatch(Arrays.asList(new PathQuery("n0", "n50"),
+            new PathQuery("n0", "n3")), DotGraph.Algorithm.BFS);
+        assertTrue(batch.get(0).doesPathReachDestination() && batch.get(1).doesPathReachDestination());
+        bfs = metrics.get(DotGraph.Algorithm.BFS);
+        assertEquals(4, bfs.getSearches());
+        assertEquals(3, bfs.getReached());
+        assertTrue(bfs.getNodesExpanded() > expanded && bfs.getNodesExpanded() <= expanded + 51, bfs.toString());
+
+        // buckets cover every value exactly once, and stay within 25%
+        for (long v : new long[]{0, 3, 4, 7, 8, 1000, 123_456_789, Long.MAX_VALUE}) {
+            int b = SearchMetrics.LatencyHistogram.bucket(v);
+            assertTrue(v <= SearchMetrics.LatencyHistogram.upperBound(b), Long.toString(v));
+            assertTrue(b == 0 || v > SearchMetrics.LatencyHistogram.upperBound(b - 1), Long.toString(v));
+            assertTrue(SearchMetrics.LatencyHistogram.upperBound(b) - v <= v / 4, Long.toString(v));
+        }
+
+        // JFR gets the same numbers without any observer
+        graph.setSearchObserver(null);
+        File jfr = File.createTempFile("search", ".jfr");
+        jfr.deleteOnExit();
+        try (Recording recording = new Recording()) {
+            recording.enable("graph.Search");
+            recording.start();
+            graph.GraphSearch("n0", "n50", DotGraph.Algorithm.BFS);
+            recording.stop();
+            recording.dump(jfr.toPath());
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(jfr.toPath());
+        assertEquals(1, events.size());
+        assertEquals("BFS", events.get(0).getString("algorithm"));
+        assertTrue(events.get(0).getBoolean("reached"));
+        assertTrue(events.get(0).getLong("nodesExpanded") > 0);
+        jfr.delete();
+    }
+
+    @Test
+    public void testSearchOptions() {
+        DotGraph graph = new DotGraph();
+        for (int i = 0; i < 10000; i++) {
+            graph.addEdge("n" + i, "n" + (i + 1));
+        }
+
+        // every algorithm gives up after 10 nodes on a 10K-node chain
+        SearchOptions tenNodes = SearchOptions.NONE.withMaxExpanded(10);
+        for (DotGraph.Algorithm algo : DotGraph.Algorithm.values()) {
+            Path p = graph.GraphSearch("n0", "n10000", algo, tenNodes);
+            assertFalse(p.doesPathReachDestination(), algo.toString());
+            assertEquals(SearchOptions.StopReason.MAX_EXPANDED, p.getStopReason(), algo.toString());
+            assertEquals("N0", p.getNodes().get(0).getName());
+            assertTrue(p.length() <= 10, algo + ": " + p);
+        }
+        Path bfs = graph.GraphSearch("n0", "n10000", graph.getBFS(), SearchOptions.NONE.withMaxExpanded(100));
+        assertEquals(100, bfs.length());
+        assertTrue(bfs.toString().endsWith("n99 (Stopped early: MAX_EXPANDED)"), bfs.toString());
+
+        // limits that aren't hit change nothing
+        SearchOptions generous = SearchOptions.NONE.withMaxExpanded(1_000_000).withTimeout(Duration.ofMinutes(1))
+            .withCancellation(new CancellationToken());
+        for (DotGraph.Algorithm algo : new DotGraph.Algorithm[]{graph.getBFS(), graph.getDFS(), graph.getDIJKSTRA(),
+                graph.getBIDIRECTIONAL_BFS(), graph.getPARALLEL_BFS()}) {
+            Path p = graph.GraphSearch("n0", "n10000", algo, generous);
+            assertTrue(p.doesPathReachDestination() && !p.isPartial(), algo.toString());
+            assertEquals(10001, p.length());
+        }
+        // deadlines too far off for nanoTime are no deadline, ones too far back have passed
+        assertTrue(graph.GraphSearch("n0", "n10000", graph.getBFS(), SearchOptions.NONE.withDeadline(Instant.MAX)
+            .withTimeout(Duration.ofSeconds(Long.MAX_VALUE))).doesPathReachDestination());
+        assertEquals(SearchOptions.StopReason.DEADLINE, graph.GraphSearch("n0", "n10000", graph.getBFS(),
+            SearchOptions.NONE.withDeadline(Instant.MIN)).getStopReason());
+
+        SearchOptions expired = SearchOptions.NONE.withDeadline(Instant.now().minusSeconds(1));
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+        for (DotGraph.Algorithm algo : DotGraph.Algorithm.values()) {
+            assertEquals(SearchOptions.StopReason.DEADLINE,
+                graph.GraphSearch("n0", "n10000", algo, SearchOptions.NONE.withTimeout(Duration.ZERO)).getStopReason());
+            assertEquals(SearchOptions.StopReason.DEADLINE, graph.GraphSearch("n0", "n10000", algo, expired).getStopReason());
+            assertEquals(SearchOptions.StopReason.CANCELLED,
+                graph.GraphSearch("n0", "n10000", algo, SearchOptions.NONE.withCancellation(token)).getStopReason());
+        }
+
+        // an interrupt stops even a search without options, and stays set
+        Thread.currentThread().interrupt();
+        Path interrupted = graph.GraphSearch("n0", "n10000", graph.getBFS());
+        assertTrue(Thread.interrupted());
+        assertEquals(SearchOptions.StopReason.INTERRUPTED, interrupted.getStopReason());
+
+        // partial paths never end up in the cache
+        PathCache cache = graph.enablePathCache(16);
+        assertTrue(graph.GraphSearch("n0", "n10000", graph.getBFS(), tenNodes).isPartial());
+        assertTrue(graph.GraphSearch("n0", "n10000", graph.getBFS()).doesPathReachDestination());
+        assertEquals(0, cache.getHits());
+        assertThrows(IllegalArgumentException.class, () -> SearchOptions.NONE.withMaxExpanded(0));
+
+        // batches take the same limits, per traversal
+        List<Path> batch = graph.GraphSearchBatch(Arrays.asList(new PathQuery("n0", "n10000"),
+            new PathQuery("n0", "n5"), new PathQuery("n20", "n10000")), graph.getBFS(), ForkJoinPool.commonPool(), tenNodes);
+        assertEquals(SearchOptions.StopReason.MAX_EXPANDED, batch.get(0).getStopReason());
+        assertTrue(batch.get(1).doesPathReachDestination());
+        assertEquals(SearchOptions.StopReason.MAX_EXPANDED, batch.get(2).getStopReason());
+    }
+
+    @Test
+    public void testShortestPaths() {
+        // the example from the Yen's algorithm Wikipedia article
+        DotGraph graph = new DotGraph();
+        graph.addEdge("c", "d", 3);
+        graph.addEdge("c", "e", 2);
+        graph.addEdge("d", "f", 4);
+        graph.addEdge("e", "d", 1);
+        graph.addEdge("e", "f", 2);
+        graph.addEdge("e", "g", 3);
+        graph.addEdge("f", "g", 2);
+        graph.addEdge("f", "h", 1);
+        graph.addEdge("g", "h", 2);
+        List<String> three = new ArrayList<>();
+        graph.shortestPaths("c", "h").limit(3).forEach(p -> three.add(p.getCost() + " " + p));
+        assertEquals(List.of("5.0 c->e->f->h (Target node!)", "7.0 c->e->g->h (Target node!)",
+            "8.0 c->d->f->h (Target node!)"), three);
+        assertEquals(7, graph.shortestPaths("c", "h").count());
+        assertEquals(1, graph.shortestPaths("c", "c").count());
+        assertEquals(0, graph.shortestPaths("h", "c").count());
+        assertEquals(0, graph.shortestPaths("c", "nowhere").count());
+        assertThrows(IllegalArgumentException.class, () -> graph.shortestPaths("nowhere", "c"));
+
+        // on random graphs Yen gives exactly the simple paths, in cost order
+        Random rnd = new Random(11);
+        for (int round = 0; round < 20; round++) {
+            DotGraph g = new DotGraph();
+            for (int i = 0; i < 25; i++) {
+                g.addEdge("n" + rnd.nextInt(8), "n" + rnd.nextInt(8), 1 + rnd.nextInt(5));
+            }
+            if (!g.getNodes().contains("N0") || !g.getNodes().contains("N7")) {
+                continue;
+            }
+            List<Path> yen = g.shortestPaths("n0", "n7").toList();
+            List<Path> all = g.simplePaths("n0", "n7", Integer.MAX_VALUE).toList();
+            assertEquals(all.size(), yen.size());
+            assertEquals(all.stream().map(Path::toString).collect(Collectors.toSet()),
+                yen.stream().map(Path::toString).collect(Collectors.toSet()));
+            for (int i = 1; i < yen.size(); i++) {
+                assertTrue(yen.get(i - 1).getCost() <= yen.get(i).getCost());
+            }
+            if (!yen.isEmpty()) {
+                assertEquals(yen.get(0).getCost(), g.GraphSearch("n0", "n7", g.getDIJKSTRA()).getCost());
+            }
+        }
+    }
+
+    @Test
+    public void testSimplePaths() {
+        DotGraph graph = new DotGraph();
+        graph.addEdge("a", "b");
+        graph.addEdge("a", "c");
+        graph.addEdge("b", "c");
+        graph.addEdge("c", "a");
+        graph.addEdge("c", "d");
+        graph.addEdge("b", "d");
+        List<String> paths = new ArrayList<>();
+        graph.simplePaths("a", "d", 10).forEach(p -> paths.add(p.toString()));
+        assertEquals(List.of("a->b->c->d (Target node!)", "a->b->d (Target node!)", "a->c->d (Target node!)"), paths);
+        assertEquals(2, graph.simplePaths("a", "d", 2).count());
+        assertEquals(0, graph.simplePaths("a", "d", 1).count());
+        assertEquals(List.of("a (Target node!)"), graph.simplePaths("a", "a", 5).map(Path::toString).toList());
+        assertThrows(IllegalArgumentException.class, () -> graph.simplePaths("a", "d", -1));
+
+        // a 40-node complete DAG has 2^38 paths from first to last, only the ones read get built
+        DotGraph dag = new DotGraph();
+        for (int i = 0; i < 40; i++) {
+            for (int j = i + 1; j < 40; j++) {
+                dag.addEdge("n" + i, "n" + j);
+            }
+        }
+        assertEquals(1000, dag.simplePaths("n0", "n39", 40).limit(1000).count());
+        assertEquals(40, dag.simplePaths("n0", "n39", 40).findFirst().get().length());
+        assertEquals(List.of("n0->n39 (Target node!)", "n0->n1->n39 (Target node!)"),
+            dag.shortestPaths("n0", "n39").limit(2).map(Path::toString).toList());
+    }
+
+    private static Set<String> edgeSet(DotGraph graph) {
+        GraphSnapshot s = graph.freeze();
+        Set<String> edges = new HashSet<>();
+        for (int u = 0; u < s.size(); u++) {
+            for (int e = s.firstEdge(u); e < s.endEdge(u); e++) {
+                edges.add(s.label(u) + "->" + s.label(s.target(e)) + ":" + s.weight(e));
+            }
+        }
+        return edges;
+    }
 }